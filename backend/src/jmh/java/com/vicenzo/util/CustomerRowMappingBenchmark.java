@@ -0,0 +1,144 @@
+package com.vicenzo.util;
+
+import com.vicenzo.customer.mapper.CustomerRowMapper;
+import com.vicenzo.customer.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a {@code customer} result set of {@code rows} rows with each mapping strategy, one operation is one query.
+ * <p>
+ * The result set is an in memory {@link CachedRowSet}, its column lookups cost the same for every strategy so the
+ * differences are the mapping itself. A new mapper is added as one more {@link Benchmark} method going through
+ * {@link #mapAll}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerRowMappingBenchmark {
+
+    private static final String[] COLUMNS = {"id", "name", "email", "age"};
+
+    @Param({"1", "100", "10000"})
+    private int rows;
+
+    private ResultSet resultSet;
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(COLUMNS.length);
+        int[] types = {Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.INTEGER};
+        for (int i = 0; i < COLUMNS.length; i++) {
+            metaData.setColumnName(i + 1, COLUMNS[i]);
+            metaData.setColumnLabel(i + 1, COLUMNS[i]);
+            metaData.setColumnType(i + 1, types[i]);
+            metaData.setNullable(i + 1, ResultSetMetaData.columnNoNulls);
+        }
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        rowSet.setMetaData(metaData);
+        for (int i = 1; i <= rows; i++) {
+            rowSet.last(); // rows are inserted after the cursor
+            rowSet.moveToInsertRow();
+            rowSet.updateLong(1, i);
+            rowSet.updateString(2, "Customer " + i);
+            rowSet.updateString(3, "customer" + i + "@gmail.com");
+            rowSet.updateInt(4, 18 + i % 60);
+            rowSet.insertRow();
+            rowSet.moveToCurrentRow();
+        }
+        resultSet = rowSet;
+    }
+
+    @Benchmark
+    public List<Customer> customerRowMapper() throws SQLException {
+        return mapAll(customerRowMapper);
+    }
+
+    @Benchmark
+    public List<Customer> beanPropertyRowMapper() throws SQLException {
+        // created per query, like the callers did
+        return mapAll(new BeanPropertyRowMapper<>(Customer.class));
+    }
+
+    @Benchmark
+    public List<Customer> rowMapperFactory() throws SQLException {
+        return mapAll(RowMapperFactory.forClass(Customer.class));
+    }
+
+    @Benchmark
+    public List<Customer> queryExecutorPopulator() throws SQLException {
+        resultSet.beforeFirst();
+        RowMapperFactory.Populator<Customer> populator =
+                RowMapperFactory.populator(Customer.class, resultSet, COLUMNS);
+        List<Customer> customers = new ArrayList<>();
+        while (resultSet.next()) {
+            Customer customer = new Customer();
+            populator.populate(customer, resultSet);
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    /**
+     * The per row setter lookup QueryExecutor used before {@link RowMapperFactory}, kept as a baseline.
+     */
+    @Benchmark
+    public List<Customer> reflectivePopulateInstance() throws SQLException {
+        resultSet.beforeFirst();
+        List<Customer> customers = new ArrayList<>();
+        while (resultSet.next()) {
+            Customer customer = new Customer();
+            for (String columnName : COLUMNS) {
+                Object value = resultSet.getObject(columnName);
+                try {
+                    String setterMethodName = "set" + columnName.substring(0, 1).toUpperCase() + columnName.substring(1);
+                    Method setter = customer.getClass().getMethod(setterMethodName, value.getClass());
+                    setter.invoke(customer, value);
+                } catch (Exception e) {
+                    throw new SQLException("Error mapping column " + columnName + " to property", e);
+                }
+            }
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    private List<Customer> mapAll(RowMapper<Customer> rowMapper) throws SQLException {
+        resultSet.beforeFirst();
+        List<Customer> customers = new ArrayList<>();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            customers.add(rowMapper.mapRow(resultSet, rowNum++));
+        }
+        return customers;
+    }
+}
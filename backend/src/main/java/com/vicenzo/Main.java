@@ -8,6 +8,7 @@ import com.vicenzo.customer.repository.CustomerRepository;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 
@@ -15,6 +16,7 @@ import java.util.List;
 import java.util.Random;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class Main {
 
 
@@ -0,0 +1,20 @@
+package com.vicenzo.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Tomcat is on the classpath for the servlet stack and spring boot would prefer it for a reactive application
+ * too, the {@code reactive} profile runs on netty's event loop instead.
+ */
+@Profile("reactive")
+@Configuration(proxyBeanMethods = false)
+public class ReactiveServerConfiguration {
+
+    @Bean
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,101 @@
+package com.vicenzo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt in with {@code read-replicas.enabled=true} and at least one {@code read-replicas.urls} entry: the
+ * {@link DataSource} becomes a {@link ReplicaRoutingDataSource} over the {@code spring.datasource} primary and a
+ * pool per replica, in place of the pool spring boot would build. Replica pools take the primary's credentials and
+ * {@code spring.datasource.hikari} settings and only connect once first checked.
+ * <p>
+ * Only read-only transactions go to a replica, see the read methods of {@code CustomerService}. A servlet filter
+ * keeps each client's reads on the primary until the replicas replayed its own last write. The reactive profile
+ * keeps its own r2dbc pool on the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "read-replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaConfiguration implements DisposableBean {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "read-replica-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReadReplicaConfiguration(ReadReplicaProperties properties, DataSourceProperties dataSourceProperties,
+                                    Environment environment) {
+        if (properties.urls().isEmpty()) {
+            throw new IllegalStateException("read-replicas.enabled needs at least one read-replicas.urls entry");
+        }
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        }
+        pools.add(primary);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : properties.urls()) {
+            HikariDataSource replica = new HikariDataSource();
+            primary.copyStateTo(replica);
+            replica.setJdbcUrl(url);
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            pools.add(replica);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        this.routingDataSource = new ReplicaRoutingDataSource(primary, replicas, properties.selection(),
+                properties.maxLag());
+        healthChecker.scheduleWithFixedDelay(routingDataSource::checkReplicas,
+                0, properties.healthCheckInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Bean
+    DataSource dataSource() {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    /**
+     * Not the routing data source itself, the data source post processors would wrap it.
+     */
+    @Bean
+    MeterBinder readReplicaMetrics() {
+        return routingDataSource::bindTo;
+    }
+
+    @Override
+    public void destroy() {
+        healthChecker.shutdownNow();
+        pools.forEach(HikariDataSource::close);
+    }
+}
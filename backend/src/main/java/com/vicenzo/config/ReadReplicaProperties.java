@@ -0,0 +1,34 @@
+package com.vicenzo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param enabled             route read-only transactions to the replicas in {@code urls}
+ * @param urls                jdbc urls of the streaming replicas, they share the primary's credentials and hikari
+ *                            settings
+ * @param selection           how a read picks among the healthy replicas
+ * @param maxLag              replication lag beyond which a replica is skipped
+ * @param healthCheckInterval pause between two checks of every replica's reachability, lag and replay position, a
+ *                            client that just wrote reads from the primary until a check finds its write replayed
+ */
+@ConfigurationProperties(prefix = "read-replicas")
+public record ReadReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<String> urls,
+        @DefaultValue("round-robin") Selection selection,
+        @DefaultValue("2s") Duration maxLag,
+        @DefaultValue("1s") Duration healthCheckInterval
+) {
+
+    public enum Selection {
+        ROUND_ROBIN,
+        /**
+         * The replica with the lowest average health check round trip.
+         */
+        LEAST_LATENCY
+    }
+}
@@ -0,0 +1,58 @@
+package com.vicenzo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Carries a client's last write from one request to the next in the {@value #COOKIE} cookie, so that only the client
+ * that wrote reads from the primary until the replicas replayed its write, see {@link ReplicaRoutingDataSource}. The
+ * cookie holds a position in the primary's wal, it stays valid on every node of the api.
+ * <p>
+ * Writes made once the response is committed, like those of a streamed batch registration, set no cookie.
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "last-write-lsn";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReplicaRoutingDataSource.bindClientWrites(new ReplicaRoutingDataSource.ClientWrites(lastWriteLsn(request),
+                lsn -> {
+                    if (!response.isCommitted()) {
+                        response.addCookie(cookie(lsn));
+                    }
+                }));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.unbindClientWrites();
+        }
+    }
+
+    private static long lastWriteLsn(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE);
+        if (cookie == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Cookie cookie(long lsn) {
+        Cookie cookie = new Cookie(COOKIE, Long.toString(lsn));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        return cookie;
+    }
+}
@@ -0,0 +1,321 @@
+package com.vicenzo.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary.
+ * <p>
+ * Transaction managers fetch the connection before they flag the transaction read-only, so this has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which defers the fetch to the first
+ * statement. {@link #checkReplicas()} skips replicas that cannot be reached or lag further behind than
+ * {@code maxLag}, with none left reads go to the primary.
+ * <p>
+ * Reads your writes per client: when a connection that ran a write for a client bound with
+ * {@link #bindClientWrites} is closed, the primary's wal position after it is handed to that client, which brings it
+ * back as {@link ClientWrites#lastWriteLsn()} on its next requests. Its reads then skip the replicas that have not
+ * replayed that far at their last check, other clients keep reading from every replica. Writes outside a client,
+ * like those of background jobs, cost no extra round trip and pin nobody.
+ * <p>
+ * Publishes {@code datasource.replica.healthy} and {@code datasource.replica.lag} by {@code replica}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder {
+
+    static final String PRIMARY = "primary";
+
+    // lag is zero once the replica replayed everything it received, or when it is not a standby at all, which has
+    // no replay position either
+    private static final String REPLICATION_LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END AS lag,
+            pg_last_wal_replay_lsn() - '0/0' AS replay_lsn
+            """;
+    // the insert position rather than pg_current_wal_lsn(), which only counts wal written out and can end before the
+    // commit record when synchronous_commit is off
+    private static final String WAL_POSITION_SQL = "SELECT pg_current_wal_insert_lsn() - '0/0'";
+    private static final ThreadLocal<ClientWrites> CLIENT_WRITES = new ThreadLocal<>();
+    private static final Set<String> READ_KEYWORDS = Set.of("SELECT", "SHOW", "VALUES");
+    // weight of the latest health check round trip in a replica's average latency
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final List<Replica> replicas;
+    private final ReadReplicaProperties.Selection selection;
+    private final long maxLagNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * @param replicas replica data sources by name, the name tags their metrics and log lines
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    ReadReplicaProperties.Selection selection, Duration maxLag) {
+        this.replicas = replicas.entrySet().stream()
+                .map(replica -> new Replica(replica.getKey(), replica.getValue()))
+                .toList();
+        this.selection = selection;
+        this.maxLagNanos = maxLag.toNanos();
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        Connection connection = super.getConnection();
+        return readOnly ? connection : trackingWrites(connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        Connection connection = super.getConnection(username, password);
+        return readOnly ? connection : trackingWrites(connection);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        ClientWrites client = CLIENT_WRITES.get();
+        long lastWriteLsn = client == null ? 0 : client.lastWriteLsn();
+        List<Replica> healthy = replicas.stream()
+                .filter(replica -> replica.isHealthy() && replica.replayLsn >= lastWriteLsn)
+                .toList();
+        if (healthy.isEmpty()) {
+            return PRIMARY;
+        }
+        return switch (selection) {
+            case ROUND_ROBIN -> healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size())).name;
+            case LEAST_LATENCY -> healthy.stream()
+                    .min(Comparator.comparingDouble(replica -> replica.latencyNanos))
+                    .orElseThrow()
+                    .name;
+        };
+    }
+
+    /**
+     * Binds the client of the current request to this thread until {@link #unbindClientWrites()}.
+     */
+    static void bindClientWrites(ClientWrites client) {
+        CLIENT_WRITES.set(client);
+    }
+
+    static void unbindClientWrites() {
+        CLIENT_WRITES.remove();
+    }
+
+    /**
+     * Measures every replica's lag, replay position and health check round trip, run it every
+     * {@code health-check-interval}.
+     * Replicas take no reads before their first check.
+     */
+    public void checkReplicas() {
+        replicas.forEach(this::check);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .description("Whether the replica takes reads")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Time since the last transaction the replica replayed, zero once caught up")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Whether a statement may change data. {@code WITH} counts as a write, it may wrap one.
+     */
+    static boolean isWrite(String sql) {
+        String statement = sql.stripLeading();
+        int end = 0;
+        while (end < statement.length() && Character.isLetter(statement.charAt(end))) {
+            end++;
+        }
+        return !READ_KEYWORDS.contains(statement.substring(0, end).toUpperCase());
+    }
+
+    private void check(Replica replica) {
+        long start = System.nanoTime();
+        double lagSeconds;
+        long replayLsn;
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(REPLICATION_LAG_SQL)) {
+            resultSet.next();
+            lagSeconds = resultSet.getDouble(1);
+            replayLsn = resultSet.getLong(2);
+            if (resultSet.wasNull()) {
+                replayLsn = Long.MAX_VALUE;
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (!Boolean.FALSE.equals(replica.healthy)) {
+                log.warn("read replica {} is unreachable, its reads go elsewhere", replica.name, e);
+            }
+            replica.healthy = false;
+            return;
+        }
+        long roundTripNanos = System.nanoTime() - start;
+        replica.latencyNanos = Double.isNaN(replica.latencyNanos)
+                ? roundTripNanos
+                : replica.latencyNanos + LATENCY_SMOOTHING * (roundTripNanos - replica.latencyNanos);
+        replica.lagSeconds = lagSeconds;
+        replica.replayLsn = replayLsn;
+
+        boolean healthy = lagSeconds * 1e9 < maxLagNanos;
+        if (healthy && !replica.isHealthy()) {
+            log.info("read replica {} takes reads, lag {}s", replica.name, lagSeconds);
+        } else if (!healthy && !Boolean.FALSE.equals(replica.healthy)) {
+            log.warn("read replica {} lags {}s behind, beyond the max lag, its reads go elsewhere",
+                    replica.name, lagSeconds);
+        }
+        replica.healthy = healthy;
+    }
+
+    private Connection trackingWrites(Connection connection) {
+        ClientWrites client = CLIENT_WRITES.get();
+        if (client == null) {
+            return connection;
+        }
+        AtomicBoolean wrote = new AtomicBoolean();
+        return proxy(Connection.class, connection, (method, args) -> {
+            String name = method.getName();
+            if (name.equals("close")) {
+                try {
+                    // transaction managers close the connection once the write is committed
+                    if (wrote.get()) {
+                        client.wrote(walPosition(connection));
+                    }
+                } finally {
+                    connection.close();
+                }
+                return null;
+            }
+            if (name.startsWith("prepare") && args[0] instanceof String sql && isWrite(sql)) {
+                wrote.set(true);
+            }
+            Object result = invoke(connection, method, args);
+            if (name.equals("createStatement")) {
+                Statement statement = (Statement) result;
+                return proxy(Statement.class, statement, (statementMethod, statementArgs) -> {
+                    if ((statementMethod.getName().startsWith("execute") || statementMethod.getName().equals("addBatch"))
+                            && statementArgs != null && statementArgs[0] instanceof String sql && isWrite(sql)) {
+                        wrote.set(true);
+                    }
+                    return invoke(statement, statementMethod, statementArgs);
+                });
+            }
+            return result;
+        });
+    }
+
+    private static long walPosition(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(WAL_POSITION_SQL)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, Interception interception) {
+        return (T) Proxy.newProxyInstance(ReplicaRoutingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> target.toString();
+                    default -> interception.invoke(method, args);
+                });
+    }
+
+    @FunctionalInterface
+    private interface Interception {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    /**
+     * The client of the current request: where in the primary's wal it last wrote, as a byte offset, and whom to
+     * tell when it writes again.
+     */
+    static final class ClientWrites {
+        private final LongConsumer onWrite;
+        private volatile long lastWriteLsn;
+
+        /**
+         * @param lastWriteLsn zero for a client that has not written yet
+         */
+        ClientWrites(long lastWriteLsn, LongConsumer onWrite) {
+            this.lastWriteLsn = lastWriteLsn;
+            this.onWrite = onWrite;
+        }
+
+        long lastWriteLsn() {
+            return lastWriteLsn;
+        }
+
+        private void wrote(long lsn) {
+            lastWriteLsn = lsn;
+            onWrite.accept(lsn);
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // null until the first check
+        private volatile Boolean healthy;
+        private volatile double lagSeconds;
+        private volatile long replayLsn;
+        private volatile double latencyNanos = Double.NaN;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isHealthy() {
+            return Boolean.TRUE.equals(healthy);
+        }
+    }
+}
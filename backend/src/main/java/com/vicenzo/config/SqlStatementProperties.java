@@ -0,0 +1,18 @@
+package com.vicenzo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param slowQueryThreshold   statements running at least this long are logged as slow queries
+ * @param slowQuerySampleRate  share of slow queries that are logged, between 0 and 1, so a struggling database
+ *                             does not also flood the logs
+ */
+@ConfigurationProperties(prefix = "sql")
+public record SqlStatementProperties(
+        @DefaultValue("500ms") Duration slowQueryThreshold,
+        @DefaultValue("1.0") double slowQuerySampleRate
+) {
+}
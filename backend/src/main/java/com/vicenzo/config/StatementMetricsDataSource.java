@@ -0,0 +1,358 @@
+package com.vicenzo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Statement level visibility for everything going through the data source: JdbcTemplate, flyway and hibernate.
+ * <p>
+ * Per normalized sql text, literals and expanded {@code IN} lists collapsed, it publishes
+ * <ul>
+ *     <li>{@code jdbc.statement}, execution time of the execute call by {@code outcome}</li>
+ *     <li>{@code jdbc.statement.rows}, rows fetched by a query or changed by an update</li>
+ *     <li>{@code jdbc.connection.acquire}, time to get the connection, attributed to the first statement it ran</li>
+ * </ul>
+ * Once {@value #MAX_METERED_SQL} statements have meters, further ones are published under {@code sql=other}, so
+ * generated sql cannot grow the registry without bound.
+ * <p>
+ * Statements slower than the threshold are logged as {@code slow query} lines of {@code key=value} pairs once their
+ * rows are known, sampled at {@code slowQuerySampleRate}; at debug level every statement is logged. Nothing is
+ * recorded before {@link #bindTo} was called.
+ */
+@Slf4j
+public class StatementMetricsDataSource extends DelegatingDataSource implements MeterBinder {
+
+    private static final int MAX_SQL_LENGTH = 300;
+    private static final int MAX_CACHED_SQL = 1_000;
+    // each statement registers four meters with histograms, statements past this many share the OTHER_SQL ones
+    static final int MAX_METERED_SQL = 500;
+    static final String OTHER_SQL = "other";
+    private static final Pattern QUOTED_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?\\b");
+    // possessive repetitions, a backtracking one recurses per element and overflows the stack on long IN lists
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)++\\s*\\)");
+    private static final Pattern REPEATED_ROWS = Pattern.compile("(\\(\\?, \\.\\.\\.\\))(?:\\s*,\\s*\\(\\?, \\.\\.\\.\\))++");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long slowQueryThresholdNanos;
+    private final double slowQuerySampleRate;
+    private final ConcurrentMap<String, String> normalizedSql = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SqlMeters> meters = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public StatementMetricsDataSource(DataSource targetDataSource, Duration slowQueryThreshold, double slowQuerySampleRate) {
+        super(targetDataSource);
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+        this.slowQuerySampleRate = slowQuerySampleRate;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = obtainTargetDataSource().getConnection();
+        return connectionProxy(connection, System.nanoTime() - start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = obtainTargetDataSource().getConnection(username, password);
+        return connectionProxy(connection, System.nanoTime() - start);
+    }
+
+    static String normalize(String sql) {
+        String normalized = QUOTED_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMERIC_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+        normalized = PARAMETER_LIST.matcher(normalized).replaceAll("(?, ...)");
+        normalized = REPEATED_ROWS.matcher(normalized).replaceAll("$1, ...");
+        return normalized.length() > MAX_SQL_LENGTH ? normalized.substring(0, MAX_SQL_LENGTH) + "..." : normalized;
+    }
+
+    private String normalizedSql(String sql) {
+        String normalized = normalizedSql.get(sql);
+        if (normalized == null) {
+            normalized = normalize(sql);
+            // generated sql (literals, IN lists) would grow the cache without bound
+            if (normalizedSql.size() < MAX_CACHED_SQL) {
+                normalizedSql.put(sql, normalized);
+            }
+        }
+        return normalized;
+    }
+
+    private Connection connectionProxy(Connection connection, long acquireNanos) {
+        ConnectionState state = new ConnectionState(acquireNanos);
+        state.proxy = proxy(Connection.class, connection, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            return switch (method.getName()) {
+                case "createStatement", "prepareStatement", "prepareCall" -> statementProxy(
+                        (Statement) result, method.getReturnType(), state,
+                        method.getName().equals("createStatement") ? null : (String) args[0]);
+                default -> result;
+            };
+        });
+        return state.proxy;
+    }
+
+    private Object statementProxy(Statement statement, Class<?> type, ConnectionState connection, String preparedSql) {
+        StatementState state = new StatementState(connection, preparedSql);
+        return proxy(type, statement, (method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(statement, method, args, state);
+            }
+            if (name.equals("getResultSet")) {
+                ResultSet resultSet = (ResultSet) invoke(statement, method, args);
+                return resultSet == null || state.current == null ? resultSet : resultSetProxy(resultSet, state.current);
+            }
+            if (name.equals("getConnection")) {
+                // spring releases the connection a statement reports, the raw one would not match the one it holds
+                // for the transaction and be closed under it
+                return connection.proxy;
+            }
+            if (name.equals("addBatch") && args != null && args.length == 1 && state.sql == null) {
+                state.sql = (String) args[0];
+            }
+            if (name.equals("close")) {
+                state.finishCurrent();
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private Object execute(Statement statement, Method method, Object[] args, StatementState state) throws Throwable {
+        state.finishCurrent();
+        String sql = args != null && args.length > 0 && args[0] instanceof String executed ? executed : state.sql;
+        Execution execution = new Execution(sql == null ? "unknown" : normalizedSql(sql), state.connection);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invoke(statement, method, args);
+        } catch (Throwable e) {
+            execution.failed(System.nanoTime() - start);
+            throw e;
+        }
+        execution.executed(System.nanoTime() - start);
+
+        if (result instanceof ResultSet resultSet) {
+            state.current = execution;
+            return resultSetProxy(resultSet, execution);
+        }
+        if (result instanceof Boolean hasResultSet) {
+            if (hasResultSet) {
+                // rows are counted once the caller fetches the result set
+                state.current = execution;
+            } else {
+                execution.finish(Math.max(statement.getUpdateCount(), 0));
+            }
+        } else if (result instanceof Number count) {
+            execution.finish(Math.max(count.longValue(), 0));
+        } else if (result instanceof int[] counts) {
+            long rows = 0;
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+            execution.finish(rows);
+        } else if (result instanceof long[] counts) {
+            long rows = 0;
+            for (long count : counts) {
+                rows += Math.max(count, 0);
+            }
+            execution.finish(rows);
+        }
+        return result;
+    }
+
+    private ResultSet resultSetProxy(ResultSet resultSet, Execution execution) {
+        return proxy(ResultSet.class, resultSet, (method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            switch (method.getName()) {
+                case "next" -> {
+                    if (Boolean.TRUE.equals(result)) {
+                        execution.rows++;
+                    }
+                }
+                case "close" -> execution.finish(execution.rows);
+                default -> {
+                }
+            }
+            return result;
+        });
+    }
+
+    private SqlMeters meters(String sql) {
+        SqlMeters sqlMeters = meters.get(sql);
+        if (sqlMeters != null) {
+            return sqlMeters;
+        }
+        MeterRegistry meterRegistry = registry;
+        // the cap is checked before adding, concurrent first executions may overshoot it by a few statements
+        return meters.computeIfAbsent(meters.size() < MAX_METERED_SQL ? sql : OTHER_SQL, key -> new SqlMeters(
+                statementTimer(meterRegistry, key, "success"),
+                statementTimer(meterRegistry, key, "error"),
+                DistributionSummary.builder("jdbc.statement.rows")
+                        .description("rows fetched by a query or changed by an update")
+                        .baseUnit("rows")
+                        .tag("sql", key)
+                        .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000)
+                        .register(meterRegistry),
+                Timer.builder("jdbc.connection.acquire")
+                        .description("time to get a connection, attributed to the first statement it ran")
+                        .tag("sql", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)));
+    }
+
+    private static Timer statementTimer(MeterRegistry registry, String sql, String outcome) {
+        return Timer.builder("jdbc.statement")
+                .description("sql statement execution")
+                .tag("sql", sql)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, Interception interception) {
+        return (T) Proxy.newProxyInstance(StatementMetricsDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> target.toString();
+                    default -> interception.invoke(method, args);
+                });
+    }
+
+    @FunctionalInterface
+    private interface Interception {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private record SqlMeters(Timer success, Timer error, DistributionSummary rows, Timer acquire) {
+    }
+
+    private static final class ConnectionState {
+        private final long acquireNanos;
+        private boolean acquireRecorded;
+        private Connection proxy;
+
+        private ConnectionState(long acquireNanos) {
+            this.acquireNanos = acquireNanos;
+        }
+    }
+
+    private final class StatementState {
+        private final ConnectionState connection;
+        private String sql;
+        private Execution current;
+
+        private StatementState(ConnectionState connection, String sql) {
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        private void finishCurrent() {
+            if (current != null) {
+                current.finish(current.rows);
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * One execution of a statement, finished once its rows are known. Statements and their result sets are used
+     * by one thread at a time, no synchronization needed.
+     */
+    private final class Execution {
+        private final String sql;
+        private final ConnectionState connection;
+        private final long acquireNanos;
+        private long durationNanos;
+        private long rows;
+        private boolean finished;
+
+        private Execution(String sql, ConnectionState connection) {
+            this.sql = sql;
+            this.connection = connection;
+            this.acquireNanos = connection.acquireNanos;
+        }
+
+        private void executed(long durationNanos) {
+            this.durationNanos = durationNanos;
+            if (registry != null) {
+                SqlMeters sqlMeters = meters(sql);
+                sqlMeters.success().record(durationNanos, TimeUnit.NANOSECONDS);
+                recordAcquire(sqlMeters);
+            }
+        }
+
+        private void failed(long durationNanos) {
+            finished = true;
+            if (registry != null) {
+                SqlMeters sqlMeters = meters(sql);
+                sqlMeters.error().record(durationNanos, TimeUnit.NANOSECONDS);
+                recordAcquire(sqlMeters);
+            }
+        }
+
+        private void recordAcquire(SqlMeters sqlMeters) {
+            if (!connection.acquireRecorded) {
+                connection.acquireRecorded = true;
+                sqlMeters.acquire().record(acquireNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void finish(long rows) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            this.rows = rows;
+            if (registry != null) {
+                meters(sql).rows().record(rows);
+            }
+            if (durationNanos >= slowQueryThresholdNanos
+                    && ThreadLocalRandom.current().nextDouble() < slowQuerySampleRate) {
+                log.warn("slow query duration_ms={} rows={} acquire_ms={} sql=\"{}\"",
+                        TimeUnit.NANOSECONDS.toMillis(durationNanos), rows,
+                        TimeUnit.NANOSECONDS.toMillis(acquireNanos), sql);
+            } else if (log.isDebugEnabled()) {
+                log.debug("query duration_ms={} rows={} sql=\"{}\"",
+                        TimeUnit.NANOSECONDS.toMillis(durationNanos), rows, sql);
+            }
+        }
+    }
+}
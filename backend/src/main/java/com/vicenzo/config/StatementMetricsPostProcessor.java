@@ -0,0 +1,50 @@
+package com.vicenzo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Wraps every {@link DataSource} bean in a {@link StatementMetricsDataSource}. Unordered, so it runs after ordered
+ * post processors and its wrapper is the outermost one.
+ * <p>
+ * Post processors are created before configuration properties beans, hence the properties are bound here and
+ * metrics are only registered once all singletons exist; statements run before that, like flyway's migrations, are
+ * not recorded.
+ */
+@Component
+public class StatementMetricsPostProcessor implements BeanPostProcessor, SmartInitializingSingleton {
+
+    private final SqlStatementProperties properties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final List<StatementMetricsDataSource> dataSources = new CopyOnWriteArrayList<>();
+
+    public StatementMetricsPostProcessor(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = Binder.get(environment).bindOrCreate("sql", SqlStatementProperties.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof StatementMetricsDataSource)) {
+            StatementMetricsDataSource statementMetricsDataSource = new StatementMetricsDataSource(
+                    dataSource, properties.slowQueryThreshold(), properties.slowQuerySampleRate());
+            dataSources.add(statementMetricsDataSource);
+            return statementMetricsDataSource;
+        }
+        return bean;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        meterRegistry.ifAvailable(registry -> dataSources.forEach(dataSource -> dataSource.bindTo(registry)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.vicenzo.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt in with {@code virtual-threads.enabled=true} on Java 21 (the {@code java21} maven profile builds for it):
+ * Tomcat handles every request on its own virtual thread instead of a pool of 200 platform threads, and so do
+ * async requests and application tasks. The blocking {@code CustomerDao} calls park the virtual thread rather than
+ * holding a platform thread, so the limit moves to the database, which {@link ConnectionLimitingDataSource} guards.
+ * <p>
+ * The project still compiles for Java 17, so the virtual thread executor is looked up reflectively.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(
+                    "virtual-threads.enabled needs Java 21, running on %s".formatted(Runtime.version()), e);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new IllegalStateException("virtual threads are not available on %s".formatted(Runtime.version()), e);
+        }
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Replaces the pooled executor spring mvc runs async requests (the customer export) and {@code @Async} on.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    /**
+     * Ordered, so it runs before the unordered {@link StatementMetricsPostProcessor} and the connection acquire
+     * time recorded there includes waiting for a permit.
+     */
+    @Bean
+    static BeanPostProcessor connectionLimitingDataSourcePostProcessor(ObjectProvider<VirtualThreadsProperties> properties) {
+        return new ConnectionLimitingDataSourcePostProcessor(properties);
+    }
+
+    private record ConnectionLimitingDataSourcePostProcessor(ObjectProvider<VirtualThreadsProperties> properties)
+            implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof ConnectionLimitingDataSource)) {
+                VirtualThreadsProperties virtualThreads = properties.getObject();
+                return new ConnectionLimitingDataSource(dataSource,
+                        virtualThreads.maxConcurrentConnections(), virtualThreads.connectionAcquireTimeout());
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
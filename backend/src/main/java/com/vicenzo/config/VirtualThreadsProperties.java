@@ -0,0 +1,20 @@
+package com.vicenzo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param enabled                  run Tomcat requests and application tasks on virtual threads, needs Java 21
+ * @param maxConcurrentConnections connections handed out at once while enabled, keep it at or below the pool size
+ *                                 so waiting happens in a fair queue instead of inside the pool
+ * @param connectionAcquireTimeout how long a request waits for a connection before failing
+ */
+@ConfigurationProperties(prefix = "virtual-threads")
+public record VirtualThreadsProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10") int maxConcurrentConnections,
+        @DefaultValue("30s") Duration connectionAcquireTimeout
+) {
+}
@@ -0,0 +1,30 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Queue behind {@code POST /api/v1/customers/registrations}, see {@code CustomerRegistrationQueue}.
+ *
+ * @param enabled        turns the asynchronous registrations on, off by default
+ * @param queueCapacity  registrations waiting to be written, more are rejected with a {@code 503}
+ * @param maxBatchSize   a batch is written as soon as it holds this many registrations
+ * @param maxBatchDelay  or once its oldest registration waited this long, whichever comes first
+ * @param jobRetention   how long the outcome of a registration can be polled once written
+ * @param maxJobs        outcomes kept at most, past it the least used ones may be dropped before {@code jobRetention};
+ *                       registrations still queued are not counted and never dropped
+ * @param retryAfter     sent in {@code Retry-After} while the queue is full
+ */
+@ConfigurationProperties(prefix = "customer.async-registration")
+public record CustomerAsyncRegistrationProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("500") int maxBatchSize,
+        @DefaultValue("20ms") Duration maxBatchDelay,
+        @DefaultValue("10m") Duration jobRetention,
+        @DefaultValue("100000") long maxJobs,
+        @DefaultValue("1s") Duration retryAfter
+) {
+}
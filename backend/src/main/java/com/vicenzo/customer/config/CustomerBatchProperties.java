@@ -0,0 +1,18 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param chunkSize number of registrations checked and written per database batch
+ */
+@ConfigurationProperties(prefix = "customer.batch")
+public record CustomerBatchProperties(
+        @DefaultValue("500") int chunkSize
+) {
+    public CustomerBatchProperties {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("customer.batch.chunk-size must be positive, was " + chunkSize);
+        }
+    }
+}
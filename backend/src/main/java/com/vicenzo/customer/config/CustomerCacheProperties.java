@@ -0,0 +1,21 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param daos        names of the {@code CustomerDao} beans ({@code jdbc}, {@code jpa}, {@code list}) wrapped in a
+ *                    read-through cache, {@code application.yml} ships with {@code jdbc}; nothing is cached when unset
+ * @param maximumSize entries kept per cache, evicted by frequency and recency once reached
+ * @param timeToLive  upper bound on staleness for writes that do not go through the wrapped dao
+ */
+@ConfigurationProperties(prefix = "customer.cache")
+public record CustomerCacheProperties(
+        @DefaultValue List<String> daos,
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("5m") Duration timeToLive
+) {
+}
@@ -0,0 +1,46 @@
+package com.vicenzo.customer.config;
+
+import com.vicenzo.customer.controller.AdaptiveConcurrencyLimit;
+import com.vicenzo.customer.controller.CustomerConcurrencyLimitInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the customer api behind adaptive concurrency limits, see {@link CustomerConcurrencyLimitInterceptor}.
+ * The bulk endpoints (export, batch, import) are left out, they take as long as their payload and their latency says
+ * nothing about the database keeping up. So are asynchronous registrations, their queue has a bound of its own.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "customer.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerConcurrencyLimitConfiguration implements WebMvcConfigurer {
+
+    private final CustomerConcurrencyLimitInterceptor interceptor;
+
+    public CustomerConcurrencyLimitConfiguration(CustomerConcurrencyLimitProperties properties) {
+        this.interceptor = new CustomerConcurrencyLimitInterceptor(
+                limit("read", properties), limit("write", properties), properties.retryAfter());
+    }
+
+    @Bean
+    CustomerConcurrencyLimitInterceptor customerConcurrencyLimitInterceptor() {
+        return interceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor)
+                .addPathPatterns("/api/v1/customers", "/api/v1/customers/*")
+                .excludePathPatterns("/api/v1/customers/export", "/api/v1/customers/batch",
+                        "/api/v1/customers/import", "/api/v1/customers/registrations");
+    }
+
+    private static AdaptiveConcurrencyLimit limit(String operation, CustomerConcurrencyLimitProperties properties) {
+        return new AdaptiveConcurrencyLimit(operation, properties.initialLimit(), properties.minLimit(),
+                properties.maxLimit(), properties.tolerance(), properties.smoothing());
+    }
+}
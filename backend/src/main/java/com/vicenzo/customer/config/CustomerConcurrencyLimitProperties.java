@@ -0,0 +1,29 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Bounds and tuning of the adaptive limits on concurrent customer reads and writes, each limit adapts on its own.
+ *
+ * @param enabled      turns the limits off, every request is let through
+ * @param initialLimit concurrent requests allowed before any latency was measured
+ * @param minLimit     the limit never drops below this, so a slow database still gets some traffic to recover with
+ * @param maxLimit     the limit never grows past this, tomcat's 200 threads by default
+ * @param tolerance    how much slower than the long term latency requests may get before the limit shrinks
+ * @param smoothing    share of every new estimate taken into the limit, lower reacts slower but flaps less
+ * @param retryAfter   sent in {@code Retry-After} with rejected requests
+ */
+@ConfigurationProperties(prefix = "customer.concurrency-limit")
+public record CustomerConcurrencyLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("20") int initialLimit,
+        @DefaultValue("2") int minLimit,
+        @DefaultValue("200") int maxLimit,
+        @DefaultValue("1.5") double tolerance,
+        @DefaultValue("0.2") double smoothing,
+        @DefaultValue("1s") Duration retryAfter
+) {
+}
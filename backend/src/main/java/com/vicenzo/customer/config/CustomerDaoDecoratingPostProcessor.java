@@ -0,0 +1,147 @@
+package com.vicenzo.customer.config;
+
+import com.vicenzo.customer.repository.CachingCustomerDao;
+import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.customer.repository.CustomersBulkLoadedEvent;
+import com.vicenzo.customer.repository.EmailFilteringCustomerDao;
+import com.vicenzo.customer.repository.SingleFlightCustomerDao;
+import com.vicenzo.customer.repository.TimedCustomerDao;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decorates the {@link CustomerDao} beans named in {@code customer.single-flight.daos} with a
+ * {@link SingleFlightCustomerDao}, those named in {@code customer.cache.daos} with a {@link CachingCustomerDao}
+ * around that and those named in {@code customer.email-filter.daos} with an {@link EmailFilteringCustomerDao}
+ * around that, so every injection point, qualified or not, gets the decorated dao. Every {@code CustomerDao} bean,
+ * including ones added later, is timed by an outermost {@link TimedCustomerDao} under its bean name.
+ * <p>
+ * Post processors are created before configuration properties beans, hence the properties are bound here and
+ * metrics are only registered once all singletons exist. Email filters are built in the background once the
+ * application is ready and rebuilt after bulk loads.
+ * <p>
+ * With {@code read-replicas.enabled}, lookups in read-only transactions may come from a replica behind the primary:
+ * the cache and the single flight let them through untouched, and email filters are built from the primary.
+ */
+@Slf4j
+@Component
+public class CustomerDaoDecoratingPostProcessor
+        implements BeanPostProcessor, SmartInitializingSingleton, DisposableBean {
+
+    private final CustomerSingleFlightProperties singleFlightProperties;
+    private final CustomerCacheProperties cacheProperties;
+    private final CustomerEmailFilterProperties emailFilterProperties;
+    private final boolean replicaReads;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+    private final List<SingleFlightCustomerDao> singleFlightDaos = new CopyOnWriteArrayList<>();
+    private final List<CachingCustomerDao> cachingDaos = new CopyOnWriteArrayList<>();
+    private final List<EmailFilteringCustomerDao> emailFilteringDaos = new CopyOnWriteArrayList<>();
+    private final List<TimedCustomerDao> timedDaos = new CopyOnWriteArrayList<>();
+    private final ExecutorService filterBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-email-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CustomerDaoDecoratingPostProcessor(Environment environment,
+                                              ObjectProvider<MeterRegistry> meterRegistry,
+                                              ObjectProvider<PlatformTransactionManager> transactionManager) {
+        Binder binder = Binder.get(environment);
+        this.singleFlightProperties =
+                binder.bindOrCreate("customer.single-flight", CustomerSingleFlightProperties.class);
+        this.cacheProperties = binder.bindOrCreate("customer.cache", CustomerCacheProperties.class);
+        this.emailFilterProperties = binder.bindOrCreate("customer.email-filter", CustomerEmailFilterProperties.class);
+        this.replicaReads = binder.bind("read-replicas.enabled", Boolean.class).orElse(false);
+        this.meterRegistry = meterRegistry;
+        this.transactionManager = transactionManager;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof CustomerDao customerDao)) {
+            return bean;
+        }
+        if (singleFlightProperties.daos().contains(beanName)) {
+            // innermost, so cache misses are coalesced as well
+            SingleFlightCustomerDao singleFlightDao = new SingleFlightCustomerDao(customerDao, beanName, replicaReads);
+            singleFlightDaos.add(singleFlightDao);
+            customerDao = singleFlightDao;
+        }
+        if (cacheProperties.daos().contains(beanName)) {
+            CachingCustomerDao cachingDao = new CachingCustomerDao(
+                    customerDao, beanName, cacheProperties.maximumSize(), cacheProperties.timeToLive(), replicaReads);
+            cachingDaos.add(cachingDao);
+            customerDao = cachingDao;
+        }
+        if (emailFilterProperties.daos().contains(beanName)) {
+            EmailFilteringCustomerDao emailFilteringDao = new EmailFilteringCustomerDao(customerDao, beanName,
+                    emailFilterProperties.expectedEmails(),
+                    emailFilterProperties.falsePositiveRate(),
+                    emailFilterProperties.maxMemory().toBytes());
+            emailFilteringDaos.add(emailFilteringDao);
+            customerDao = emailFilteringDao;
+        }
+        TimedCustomerDao timedDao = new TimedCustomerDao(customerDao, beanName);
+        timedDaos.add(timedDao);
+        return timedDao.proxy();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        meterRegistry.ifAvailable(registry -> {
+            singleFlightDaos.forEach(dao -> dao.bindTo(registry));
+            cachingDaos.forEach(dao -> dao.bindTo(registry));
+            emailFilteringDaos.forEach(dao -> dao.bindTo(registry));
+            timedDaos.forEach(dao -> dao.bindTo(registry));
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildEmailFilters() {
+        emailFilteringDaos.forEach(this::scheduleRebuild);
+    }
+
+    @EventListener
+    public void onBulkLoad(CustomersBulkLoadedEvent event) {
+        cachingDaos.forEach(CachingCustomerDao::invalidateNegativeEntries);
+        emailFilteringDaos.forEach(dao -> {
+            dao.suspend();
+            scheduleRebuild(dao);
+        });
+    }
+
+    private void scheduleRebuild(EmailFilteringCustomerDao dao) {
+        TransactionTemplate scan = new TransactionTemplate(transactionManager.getObject());
+        // a read-only one would go to a replica, which may miss emails written before the rebuild started
+        scan.setReadOnly(!replicaReads);
+        filterBuilder.execute(() -> {
+            try {
+                scan.executeWithoutResult(status -> dao.rebuild());
+            } catch (RuntimeException e) {
+                log.warn("could not build the customer email filter, email checks go to the database", e);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        filterBuilder.shutdownNow();
+    }
+}
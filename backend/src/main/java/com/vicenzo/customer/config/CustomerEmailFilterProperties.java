@@ -0,0 +1,23 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * @param daos              names of the {@code CustomerDao} beans whose email checks go through a Bloom filter,
+ *                          {@code jdbc} as shipped in {@code application.yml}, no filter when the property is unset
+ * @param expectedEmails    stored emails the filter is sized for
+ * @param falsePositiveRate target share of free emails the filter still sends to the database
+ * @param maxMemory         hard cap on the filter size, trades a higher false positive rate for memory
+ */
+@ConfigurationProperties(prefix = "customer.email-filter")
+public record CustomerEmailFilterProperties(
+        @DefaultValue List<String> daos,
+        @DefaultValue("1000000") long expectedEmails,
+        @DefaultValue("0.01") double falsePositiveRate,
+        @DefaultValue("16MB") DataSize maxMemory
+) {
+}
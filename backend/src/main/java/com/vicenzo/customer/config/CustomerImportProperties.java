@@ -0,0 +1,18 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param segmentSize       bytes of the csv file mapped and copied to postgres at a time, bounds import memory
+ * @param splitSize         fork/join tasks stop splitting below this many bytes
+ * @param maxReportedErrors invalid rows listed in the response, all of them are counted
+ */
+@ConfigurationProperties(prefix = "customer.import")
+public record CustomerImportProperties(
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("1MB") DataSize splitSize,
+        @DefaultValue("100") int maxReportedErrors
+) {
+}
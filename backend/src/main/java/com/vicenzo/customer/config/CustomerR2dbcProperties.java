@@ -0,0 +1,26 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Connection settings of the reactive customer repository, only read with the {@code reactive} profile.
+ *
+ * @param url         r2dbc url, {@code r2dbc:postgresql://host:port/database}
+ * @param maxSize     connections in the pool
+ * @param maxIdleTime idle connections are closed after this long
+ * @param fetchSize   rows requested from the server at a time while streaming, so a slow client holds back the
+ *                    query instead of rows piling up in memory
+ */
+@ConfigurationProperties(prefix = "customer.r2dbc")
+public record CustomerR2dbcProperties(
+        String url,
+        String username,
+        String password,
+        @DefaultValue("10") int maxSize,
+        @DefaultValue("30m") Duration maxIdleTime,
+        @DefaultValue("500") int fetchSize
+) {
+}
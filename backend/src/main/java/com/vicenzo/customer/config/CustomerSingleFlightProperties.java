@@ -0,0 +1,16 @@
+package com.vicenzo.customer.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * @param daos names of the {@code CustomerDao} beans whose concurrent lookups of the same customer share one query,
+ *             all three in the shipped {@code application.yml}, lookups are never coalesced without it
+ */
+@ConfigurationProperties(prefix = "customer.single-flight")
+public record CustomerSingleFlightProperties(
+        @DefaultValue List<String> daos
+) {
+}
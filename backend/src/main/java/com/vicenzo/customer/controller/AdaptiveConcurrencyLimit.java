@@ -0,0 +1,139 @@
+package com.vicenzo.customer.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit adjusted from measured latency, after the gradient algorithm of Netflix' concurrency-limits.
+ * <p>
+ * Every completed request is a latency sample. A long term average of the samples stands for the latency of a
+ * healthy database; when a sample is more than {@code tolerance} times slower, requests are queueing and the limit
+ * shrinks by their ratio, at most by half; otherwise it grows by the square root of the limit, the queue it allows.
+ * Each new estimate is smoothed into the limit. Samples of requests that failed halve the estimate, and
+ * the limit does not grow while less than half of it is used, a quiet period says nothing about capacity.
+ * <p>
+ * Publishes {@code customer.concurrency.limit}, {@code customer.concurrency.in.flight} and
+ * {@code customer.concurrency.rejected} tagged with the {@code operation} the limit applies to.
+ */
+public class AdaptiveConcurrencyLimit implements MeterBinder {
+
+    private static final int WARMUP_SAMPLES = 10;
+    private static final int LONG_TERM_SAMPLES = 600;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final String operation;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double longTermLatencyNanos;
+    private int samples;
+    private volatile Counter rejected;
+
+    public AdaptiveConcurrencyLimit(String operation, int initialLimit, int minLimit, int maxLimit,
+                                    double tolerance, double smoothing) {
+        this.operation = operation;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.concurrency.limit", this, AdaptiveConcurrencyLimit::getLimit)
+                .description("concurrent customer requests allowed")
+                .tag("operation", operation)
+                .register(registry);
+        Gauge.builder("customer.concurrency.in.flight", this, AdaptiveConcurrencyLimit::getInFlight)
+                .description("customer requests being handled")
+                .tag("operation", operation)
+                .register(registry);
+        rejected = Counter.builder("customer.concurrency.rejected")
+                .description("customer requests rejected above the limit")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    /**
+     * @return the request's permit, or {@code null} when the limit is reached
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                Counter counter = rejected;
+                if (counter != null) {
+                    counter.increment();
+                }
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(System.nanoTime(), current + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    synchronized void onSample(long latencyNanos, int inFlightAtStart, boolean failed) {
+        double sample = Math.max(latencyNanos, 1);
+        samples++;
+        if (samples <= WARMUP_SAMPLES) {
+            longTermLatencyNanos += (sample - longTermLatencyNanos) / samples;
+        } else {
+            longTermLatencyNanos += (sample - longTermLatencyNanos) * 2 / (LONG_TERM_SAMPLES + 1);
+        }
+        // after a long overload the average lags far behind a recovered database, pull it back faster
+        if (longTermLatencyNanos / sample > 2) {
+            longTermLatencyNanos *= 0.95;
+        }
+
+        double gradient = failed
+                ? MIN_GRADIENT
+                : Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longTermLatencyNanos / sample));
+        if (gradient == 1.0 && inFlightAtStart < limit / 2) {
+            return;
+        }
+        // failing requests earn no queue, else the limit would settle at 4 instead of the minimum
+        double estimate = limit * gradient + (failed ? 0 : Math.sqrt(limit));
+        double smoothed = limit * (1 - smoothing) + estimate * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+    /**
+     * Held while a request is handled, {@link #release} exactly once.
+     */
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void release(boolean failed) {
+            if (released) {
+                return;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            onSample(System.nanoTime() - startNanos, inFlightAtStart, failed);
+        }
+    }
+}
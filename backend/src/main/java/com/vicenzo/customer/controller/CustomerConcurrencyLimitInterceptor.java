@@ -0,0 +1,64 @@
+package com.vicenzo.customer.controller;
+
+import com.vicenzo.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Lets customer requests through while their operation's {@link AdaptiveConcurrencyLimit} allows, reads
+ * ({@code GET}, {@code HEAD}) and writes limited separately, and rejects the rest right away with a
+ * {@link ServiceUnavailableException} instead of queueing them for a database connection.
+ * <p>
+ * A request that ends in a server error or an unresolved exception is a failed sample and shrinks the limit.
+ */
+public class CustomerConcurrencyLimitInterceptor implements HandlerInterceptor, MeterBinder {
+
+    private static final String PERMIT_ATTRIBUTE = CustomerConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    private final AdaptiveConcurrencyLimit reads;
+    private final AdaptiveConcurrencyLimit writes;
+    private final Duration retryAfter;
+
+    public CustomerConcurrencyLimitInterceptor(AdaptiveConcurrencyLimit reads, AdaptiveConcurrencyLimit writes,
+                                               Duration retryAfter) {
+        this.reads = reads;
+        this.writes = writes;
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        reads.bindTo(registry);
+        writes.bindTo(registry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            return true;
+        }
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        AdaptiveConcurrencyLimit.Permit permit = (read ? reads : writes).tryAcquire();
+        if (permit == null) {
+            throw new ServiceUnavailableException(
+                    "too many concurrent customer %s, retry later".formatted(read ? "reads" : "writes"), retryAfter);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof AdaptiveConcurrencyLimit.Permit permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permit.release(ex != null || response.getStatus() >= 500);
+        }
+    }
+}
@@ -1,35 +1,88 @@
 package com.vicenzo.customer.controller;
 
+import com.vicenzo.customer.dto.CustomerImportResult;
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
+import com.vicenzo.customer.dto.CustomerPage;
 import com.vicenzo.customer.dto.CustomerRegistrationRequest;
 import com.vicenzo.customer.dto.CustomerUpdateRequest;
 import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerUpdateResult;
+import com.vicenzo.customer.service.CustomerBatchRegistrationService;
+import com.vicenzo.customer.service.CustomerExportService;
+import com.vicenzo.customer.service.CustomerImportService;
 import com.vicenzo.customer.service.CustomerService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // CustomerRouter serves reactive apps
 @RestController()
 @RequestMapping("/api/v1/customers")
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final CustomerExportService customerExportService;
+    private final CustomerBatchRegistrationService customerBatchRegistrationService;
+    private final CustomerImportService customerImportService;
 
     @GetMapping()
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public List<Customer> getCustomers(WebRequest request) {
+        return customerService.getAllCustomers(request::checkNotModified);
+    }
+
+    @GetMapping(params = "limit")
+    public CustomerPage getCustomersPage(@RequestParam(required = false) String cursor,
+                                         @RequestParam int limit,
+                                         WebRequest request) {
+        return customerService.getCustomersPage(cursor, limit, request::checkNotModified);
+    }
+
+    /**
+     * {@code ?ids=1,2,3} or {@code ?ids=1&ids=2}, customers come back in request order next to the ids not found.
+     */
+    @GetMapping(params = "ids")
+    public CustomerMultiGetResult getCustomersByIds(@RequestParam List<Long> ids) {
+        return customerService.getCustomers(ids);
+    }
+
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(customerExportService::exportCustomers);
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomersById(@PathVariable Long customerId) {
-        return customerService.getCustomer(customerId);
+    public Customer getCustomersById(@PathVariable Long customerId, WebRequest request) {
+        return customerService.getCustomer(customerId, request::checkNotModified);
     }
 
     @PostMapping()
-    public void registerCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
-        customerService.addCustomer(customerRegistrationRequest);
+    public Long registerCustomer(@RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
+        return customerService.addCustomer(customerRegistrationRequest);
+    }
+
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> registerCustomers(InputStream body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> customerBatchRegistrationService.registerCustomers(body, outputStream));
+    }
+
+    @PostMapping(value = "import", consumes = "text/csv")
+    public CustomerImportResult importCustomers(InputStream body) throws IOException {
+        return customerImportService.importCsv(body);
     }
 
     @DeleteMapping("{customerId}")
@@ -38,8 +91,12 @@ public class CustomerController {
     }
 
     @PutMapping("{customerId}")
-    public void updateCustomer(@PathVariable("customerId") Long customerId,
-                               @RequestBody CustomerUpdateRequest updateRequest) {
-        customerService.updateCustomer(customerId, updateRequest);
+    public ResponseEntity<Customer> updateCustomer(@PathVariable("customerId") Long customerId,
+                                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody CustomerUpdateRequest updateRequest) {
+        CustomerUpdateResult result = customerService.updateCustomer(customerId, ifMatch, updateRequest);
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(result.version()))
+                .body(result.customer());
     }
 }
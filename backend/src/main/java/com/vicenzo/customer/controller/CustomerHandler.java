@@ -0,0 +1,110 @@
+package com.vicenzo.customer.controller;
+
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.dto.CustomerUpdateRequest;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.service.ReactiveCustomerService;
+import com.vicenzo.exception.RequestValidationException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Handlers behind {@link CustomerRouter}, the reactive twin of {@link CustomerController}.
+ */
+@Profile("reactive")
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerHandler {
+
+    private final ReactiveCustomerService customerService;
+
+    /**
+     * Streams the customers as they are read, as one json array or, when the client accepts it, newline
+     * delimited json. Either way nothing is buffered and a slow client applies backpressure to the query.
+     */
+    public Mono<ServerResponse> getCustomers(ServerRequest request) {
+        MediaType mediaType = request.headers().accept().contains(MediaType.APPLICATION_NDJSON)
+                ? MediaType.APPLICATION_NDJSON
+                : MediaType.APPLICATION_JSON;
+        return ServerResponse.ok()
+                .contentType(mediaType)
+                .body(customerService.getAllCustomers(), Customer.class);
+    }
+
+    public Mono<ServerResponse> getCustomersPage(ServerRequest request) {
+        int limit;
+        try {
+            limit = Integer.parseInt(request.queryParam("limit").orElseThrow());
+        } catch (NumberFormatException e) {
+            return Mono.error(new RequestValidationException("limit must be a number"));
+        }
+        return customerService.getCustomersPage(request.queryParam("cursor").orElse(null), limit)
+                .flatMap(page -> ServerResponse.ok().bodyValue(page));
+    }
+
+    public Mono<ServerResponse> getCustomersByIds(ServerRequest request) {
+        List<Long> ids;
+        try {
+            // ?ids=1,2,3 as well as ?ids=1&ids=2, like the servlet api
+            ids = request.queryParams().get("ids").stream()
+                    .flatMap(value -> Arrays.stream(value.split(",")))
+                    .filter(id -> !id.isBlank())
+                    .map(id -> Long.valueOf(id.strip()))
+                    .toList();
+        } catch (NumberFormatException e) {
+            return Mono.error(new RequestValidationException("ids must be numbers"));
+        }
+        return customerService.getCustomers(ids)
+                .flatMap(result -> ServerResponse.ok().bodyValue(result));
+    }
+
+    public Mono<ServerResponse> exportCustomers(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(customerService.getAllCustomers(), Customer.class);
+    }
+
+    public Mono<ServerResponse> getCustomer(ServerRequest request) {
+        return customerService.getCustomer(customerId(request))
+                .flatMap(customer -> ServerResponse.ok().bodyValue(customer));
+    }
+
+    public Mono<ServerResponse> registerCustomer(ServerRequest request) {
+        return request.bodyToMono(CustomerRegistrationRequest.class)
+                .flatMap(customerService::addCustomer)
+                .flatMap(id -> ServerResponse.ok().bodyValue(id));
+    }
+
+    public Mono<ServerResponse> deleteCustomer(ServerRequest request) {
+        return customerService.deleteCustomerById(customerId(request))
+                .then(ServerResponse.ok().build());
+    }
+
+    public Mono<ServerResponse> updateCustomer(ServerRequest request) {
+        Long customerId = customerId(request);
+        String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+        return request.bodyToMono(CustomerUpdateRequest.class)
+                .flatMap(updateRequest -> customerService.updateCustomer(customerId, ifMatch, updateRequest))
+                .flatMap(result -> ServerResponse.ok()
+                        .eTag(String.valueOf(result.version()))
+                        .bodyValue(result.customer()));
+    }
+
+    private static Long customerId(ServerRequest request) {
+        try {
+            return Long.valueOf(request.pathVariable("customerId"));
+        } catch (NumberFormatException e) {
+            throw new RequestValidationException("customer id must be a number");
+        }
+    }
+}
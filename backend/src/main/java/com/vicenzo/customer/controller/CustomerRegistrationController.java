@@ -0,0 +1,47 @@
+package com.vicenzo.customer.controller;
+
+import com.vicenzo.customer.dto.CustomerRegistrationJob;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.service.CustomerRegistrationQueue;
+import com.vicenzo.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Asynchronous registrations, on with {@code customer.async-registration.enabled}: a registration is answered with
+ * {@code 202 Accepted} and a job to poll at its {@code Location} until it left {@code QUEUED}.
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "customer.async-registration", name = "enabled", havingValue = "true")
+@RestController
+@RequestMapping("/api/v1/customers/registrations")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerRegistrationController {
+
+    private final CustomerRegistrationQueue customerRegistrationQueue;
+
+    @PostMapping
+    public ResponseEntity<CustomerRegistrationJob> registerCustomer(
+            @RequestBody CustomerRegistrationRequest customerRegistrationRequest) {
+        CustomerRegistrationJob job = customerRegistrationQueue.submit(customerRegistrationRequest);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{jobId}").build(job.id()))
+                .body(job);
+    }
+
+    @GetMapping("{jobId}")
+    public CustomerRegistrationJob getRegistration(@PathVariable String jobId) {
+        return customerRegistrationQueue.getJob(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("registration [%s] not found".formatted(jobId)));
+    }
+}
@@ -0,0 +1,34 @@
+package com.vicenzo.customer.controller;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Functional WebFlux routes mirroring {@link CustomerController} for the {@code reactive} profile. The batch, csv
+ * import and asynchronous registration endpoints are servlet only.
+ */
+@Profile("reactive")
+@Configuration(proxyBeanMethods = false)
+public class CustomerRouter {
+
+    @Bean
+    RouterFunction<ServerResponse> customerRoutes(CustomerHandler customerHandler) {
+        return route()
+                .path("/api/v1/customers", builder -> builder
+                        .GET("", queryParam("limit", limit -> true), customerHandler::getCustomersPage)
+                        .GET("", queryParam("ids", ids -> true), customerHandler::getCustomersByIds)
+                        .GET("", customerHandler::getCustomers)
+                        .GET("/export", customerHandler::exportCustomers)
+                        .GET("/{customerId}", customerHandler::getCustomer)
+                        .POST("", customerHandler::registerCustomer)
+                        .DELETE("/{customerId}", customerHandler::deleteCustomer)
+                        .PUT("/{customerId}", customerHandler::updateCustomer))
+                .build();
+    }
+}
@@ -0,0 +1,18 @@
+package com.vicenzo.customer.dto;
+
+import java.util.List;
+
+/**
+ * Summary of a csv import. {@code duplicates} counts valid rows skipped because their email was already
+ * registered or repeated earlier in the file, {@code errors} lists the first invalid rows.
+ */
+public record CustomerImportResult(
+        long rowsRead,
+        long imported,
+        long duplicates,
+        long invalid,
+        List<RowError> errors
+) {
+    public record RowError(long line, String message) {
+    }
+}
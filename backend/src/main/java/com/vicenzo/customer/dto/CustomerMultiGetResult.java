@@ -0,0 +1,15 @@
+package com.vicenzo.customer.dto;
+
+import com.vicenzo.customer.model.Customer;
+
+import java.util.List;
+
+/**
+ * Customers of a multi-get in the order their ids were requested, a repeated id only once. {@code missingIds} are
+ * the requested ids no customer has, in request order as well.
+ */
+public record CustomerMultiGetResult(
+        List<Customer> customers,
+        List<Long> missingIds
+) {
+}
@@ -0,0 +1,15 @@
+package com.vicenzo.customer.dto;
+
+import com.vicenzo.customer.model.Customer;
+
+import java.util.List;
+
+/**
+ * One page of customers. {@code nextCursor} is an opaque token to pass back as {@code cursor}
+ * for the following page, or {@code null} when this is the last page.
+ */
+public record CustomerPage(
+        List<Customer> customers,
+        String nextCursor
+) {
+}
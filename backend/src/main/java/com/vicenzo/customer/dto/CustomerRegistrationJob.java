@@ -0,0 +1,36 @@
+package com.vicenzo.customer.dto;
+
+/**
+ * State of an asynchronous registration. {@code customerId} is set once {@code CREATED}, {@code message} tells why
+ * a registration was not.
+ */
+public record CustomerRegistrationJob(
+        String id,
+        String email,
+        Status status,
+        Long customerId,
+        String message
+) {
+    public enum Status {
+        QUEUED,
+        CREATED,
+        DUPLICATE,
+        FAILED
+    }
+
+    public static CustomerRegistrationJob queued(String id, String email) {
+        return new CustomerRegistrationJob(id, email, Status.QUEUED, null, null);
+    }
+
+    public CustomerRegistrationJob created(Long customerId) {
+        return new CustomerRegistrationJob(id, email, Status.CREATED, customerId, null);
+    }
+
+    public CustomerRegistrationJob duplicate() {
+        return new CustomerRegistrationJob(id, email, Status.DUPLICATE, null, "email already taken");
+    }
+
+    public CustomerRegistrationJob failed(String message) {
+        return new CustomerRegistrationJob(id, email, Status.FAILED, null, message);
+    }
+}
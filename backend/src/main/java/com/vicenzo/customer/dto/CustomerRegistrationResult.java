@@ -0,0 +1,29 @@
+package com.vicenzo.customer.dto;
+
+/**
+ * Outcome of one item of a bulk registration, {@code index} is its position in the request array.
+ */
+public record CustomerRegistrationResult(
+        int index,
+        String email,
+        Status status,
+        String message
+) {
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+
+    public static CustomerRegistrationResult created(int index, String email) {
+        return new CustomerRegistrationResult(index, email, Status.CREATED, null);
+    }
+
+    public static CustomerRegistrationResult duplicate(int index, String email) {
+        return new CustomerRegistrationResult(index, email, Status.DUPLICATE, "email already taken");
+    }
+
+    public static CustomerRegistrationResult invalid(int index, String email, String message) {
+        return new CustomerRegistrationResult(index, email, Status.INVALID, message);
+    }
+}
@@ -22,10 +22,11 @@ import java.util.Objects;
 )
 public class Customer {
     @Id
+    // matches the sequence increment (V4 migration), one nextval covers a whole insert batch
     @SequenceGenerator(
             name = "customer_id_seq",
             sequenceName = "customer_id_seq",
-            allocationSize = 1
+            allocationSize = 50
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -45,6 +46,10 @@ public class Customer {
         this.age = age;
     }
 
+    public Customer(Customer customer) {
+        this(customer.id, customer.name, customer.email, customer.age);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,253 @@
+package com.vicenzo.customer.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of any {@link CustomerDao}.
+ * <p>
+ * Single customer lookups and both existence checks are cached, including negative answers. A lookup caches the
+ * customer with its version, plain and versioned lookups of the same id share that entry. Emails are only
+ * cached while absent: a taken email can only become free through a write of the customer owning it, which this
+ * decorator cannot map back to the email without an extra read. Entries are evicted by Caffeine's
+ * frequency/recency policy once {@code maximumSize} is reached and expire {@code timeToLive} after being loaded.
+ * <p>
+ * With {@code replicaReads}, reads in a read-only transaction bypass the cache: they may come from a replica behind
+ * the primary, whose rows would outlive the invalidation of the write they miss, and a client pinned to the primary
+ * until its write was replayed would get a cached row without reaching the routing at all.
+ * <p>
+ * Every write invalidates the keys it touches once it returned and again after the surrounding transaction
+ * committed, loads of a key being invalidated finish first, so a reader racing a writer cannot leave a stale entry
+ * behind. Cached customers are copies, callers may mutate what they get.
+ */
+public class CachingCustomerDao implements CustomerDao, MeterBinder {
+
+    private final CustomerDao delegate;
+    private final String name;
+    private final boolean replicaReads;
+    private final Cache<Long, Optional<VersionedCustomer>> customersById;
+    private final Cache<Long, Boolean> customerExistsById;
+    private final Cache<String, Boolean> absentEmails;
+
+    /**
+     * @param replicaReads whether read-only transactions may read from a replica, see {@code read-replicas.enabled}
+     */
+    public CachingCustomerDao(CustomerDao delegate, String name, long maximumSize, Duration timeToLive,
+                              boolean replicaReads) {
+        this.delegate = delegate;
+        this.name = name;
+        this.replicaReads = replicaReads;
+        this.customersById = newCache(maximumSize, timeToLive);
+        this.customerExistsById = newCache(maximumSize, timeToLive);
+        this.absentEmails = newCache(maximumSize, timeToLive);
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maximumSize, Duration timeToLive) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Publishes gets (hit/miss), puts, evictions and size of each cache, tagged with the wrapped dao's name.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("dao", name);
+        CaffeineCacheMetrics.monitor(registry, customersById, "customerById", tags);
+        CaffeineCacheMetrics.monitor(registry, customerExistsById, "customerExistsById", tags);
+        CaffeineCacheMetrics.monitor(registry, absentEmails, "customerAbsentEmail", tags);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return delegate.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long customerId) {
+        return selectVersionedCustomerById(customerId).map(VersionedCustomer::customer);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId) {
+        if (bypassesCache()) {
+            return delegate.selectVersionedCustomerById(customerId);
+        }
+        return customersById.get(customerId,
+                        id -> delegate.selectVersionedCustomerById(id).map(VersionedCustomer::copy))
+                .map(VersionedCustomer::copy);
+    }
+
+    /**
+     * Cached customers come from the cache and the rest from one query on the delegate. Those are not cached: unlike
+     * a single load, a bulk load does not hold off an invalidation of its keys and could cache a customer a
+     * concurrent write just changed.
+     */
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        if (bypassesCache()) {
+            return delegate.selectCustomersByIds(ids);
+        }
+        Map<Long, Optional<VersionedCustomer>> cached = customersById.getAllPresent(ids);
+        List<Long> missing = ids.stream()
+                .filter(id -> !cached.containsKey(id))
+                .distinct()
+                .toList();
+        Stream<Customer> loaded = missing.isEmpty() ? Stream.empty() : delegate.selectCustomersByIds(missing).stream();
+        Stream<Customer> hits = cached.values().stream()
+                .flatMap(Optional::stream)
+                .map(VersionedCustomer::customer);
+        return Stream.concat(hits, loaded)
+                .map(Customer::new)
+                .toList();
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        Optional<Long> id = delegate.insertCustomer(customer);
+        id.ifPresent(inserted -> invalidate(() -> {
+            absentEmails.invalidate(customer.getEmail());
+            invalidateId(inserted);
+        }));
+        return id;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = delegate.insertCustomers(customers);
+        invalidate(() -> invalidateInserted(customers));
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        if (bypassesCache()) {
+            return delegate.existsCustomerWithEmail(email);
+        }
+        return absentEmails.get(email, e -> delegate.existsCustomerWithEmail(e) ? null : Boolean.TRUE) == null;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        if (bypassesCache()) {
+            return delegate.existsCustomerWithId(id);
+        }
+        return customerExistsById.get(id, delegate::existsCustomerWithId);
+    }
+
+    @Override
+    public int deleteCustomerCustomerById(Long id) {
+        int deleted = delegate.deleteCustomerCustomerById(id);
+        invalidate(() -> invalidateId(id));
+        return deleted;
+    }
+
+    @Override
+    public int deleteCustomersByIds(Collection<Long> ids) {
+        int deleted = delegate.deleteCustomersByIds(ids);
+        invalidate(() -> ids.forEach(this::invalidateId));
+        return deleted;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        delegate.updateCustomer(customer);
+        invalidate(() -> {
+            invalidateId(customer.getId());
+            absentEmails.invalidate(customer.getEmail());
+        });
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email,
+                                                     Integer age) {
+        CustomerUpdateResult result = delegate.updateCustomerFields(id, expectedVersion, name, email, age);
+        if (result.outcome() == CustomerUpdateResult.Outcome.UPDATED) {
+            invalidate(() -> {
+                invalidateId(id);
+                absentEmails.invalidate(result.customer().getEmail());
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Drops entries that writes done behind this dao's back may have made wrong: every absent email and every
+     * "no such customer" answer.
+     */
+    public void invalidateNegativeEntries() {
+        absentEmails.invalidateAll();
+        customersById.asMap().values().removeIf(Optional::isEmpty);
+        customerExistsById.asMap().values().removeIf(exists -> !exists);
+    }
+
+    private boolean bypassesCache() {
+        return replicaReads && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private void invalidateInserted(List<Customer> customers) {
+        boolean unknownIds = false;
+        for (Customer customer : customers) {
+            absentEmails.invalidate(customer.getEmail());
+            if (customer.getId() != null) {
+                invalidateId(customer.getId());
+            } else {
+                unknownIds = true;
+            }
+        }
+        if (unknownIds) {
+            customersById.asMap().values().removeIf(Optional::isEmpty);
+            customerExistsById.asMap().values().removeIf(exists -> !exists);
+        }
+    }
+
+    private void invalidateId(Long id) {
+        customersById.invalidate(id);
+        customerExistsById.invalidate(id);
+    }
+
+    private static void invalidate(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
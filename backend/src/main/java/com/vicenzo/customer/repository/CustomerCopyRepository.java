@@ -0,0 +1,81 @@
+package com.vicenzo.customer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Postgres only bulk load path: rows are streamed with COPY into an unlogged staging table and merged into
+ * {@code customer} with one set based statement. All methods must run in the same transaction so they share
+ * one connection, a rollback then also removes the staging table.
+ */
+@Repository
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerCopyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public String createStagingTable() {
+        String table = "customer_import_" + UUID.randomUUID().toString().replace("-", "");
+        jdbcTemplate.execute("""
+                CREATE UNLOGGED TABLE %s (
+                    position BIGINT NOT NULL,
+                    name TEXT NOT NULL,
+                    email TEXT NOT NULL,
+                    age INT NOT NULL
+                )
+                """.formatted(table));
+        return table;
+    }
+
+    /**
+     * Streams csv formatted {@code position,name,email,age} rows into the staging table.
+     */
+    public long copyIntoStaging(String table, List<byte[]> csvRows) {
+        var sql = "COPY %s (position, name, email, age) FROM STDIN WITH (FORMAT csv)".formatted(table);
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                for (byte[] rows : csvRows) {
+                    copyIn.writeToCopy(rows, 0, rows.length);
+                }
+                return copyIn.endCopy();
+            } catch (SQLException e) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                throw e;
+            }
+        });
+        return copied == null ? 0 : copied;
+    }
+
+    /**
+     * Inserts the staged rows, keeping the first occurrence of an email in the file and skipping emails
+     * already taken, resolved by the {@code unique_email_constraint} index in a single statement.
+     *
+     * @return number of customers inserted
+     */
+    public long mergeStagingIntoCustomer(String table) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT DISTINCT ON (email) name, email, age
+                FROM %s
+                ORDER BY email, position
+                ON CONFLICT (email) DO NOTHING
+                """.formatted(table);
+        return jdbcTemplate.update(sql);
+    }
+
+    public void dropStagingTable(String table) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS %s".formatted(table));
+    }
+}
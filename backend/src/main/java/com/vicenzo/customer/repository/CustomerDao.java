@@ -2,21 +2,88 @@ package com.vicenzo.customer.repository;
 
 import com.vicenzo.customer.model.Customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
 
+    /**
+     * Keyset page: customers with an id strictly greater than {@code afterId}, ordered by id.
+     * Cost does not depend on how deep the page is, unlike OFFSET pagination.
+     */
+    List<Customer> selectCustomersAfterId(Long afterId, int limit);
+
+    /**
+     * Lazily streams every customer. The stream holds database resources and must be closed,
+     * and implementations backed by a cursor only stream inside a transaction.
+     */
+    Stream<Customer> streamAllCustomers();
+
     Optional<Customer> selectCustomerById(Long customerId);
 
-    void insertCustomer(Customer customer);
+    /**
+     * The customer and the version of the row it was read from, in one query.
+     */
+    Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId);
+
+    /**
+     * Customers whose id is in {@code ids}, in a single query whatever the number of ids. Unknown ids are left out,
+     * the order of the result is unspecified.
+     */
+    List<Customer> selectCustomersByIds(Collection<Long> ids);
+
+    /**
+     * Inserts the customer unless its email is already taken, atomically and in one round trip.
+     * The generated id is also set on {@code customer}.
+     *
+     * @return the new customer's id, empty when the email is taken
+     */
+    Optional<Long> insertCustomer(Customer customer);
+
+    /**
+     * Inserts all customers in one batch and sets the generated ids on them. A customer whose email is already
+     * taken, or repeated earlier in the list, is skipped, its slot in the returned array is 0 while inserted
+     * customers report 1.
+     */
+    int[] insertCustomers(List<Customer> customers);
 
     boolean existsCustomerWithEmail(String email);
 
+    /**
+     * Returns the subset of {@code emails} already registered, in a single query.
+     */
+    Set<String> selectExistingEmails(Collection<String> emails);
+
     boolean existsCustomerWithId(Long id);
 
-    void deleteCustomerCustomerById(Long id);
+    /**
+     * @return number of customers deleted, 0 when there is no customer with this id
+     */
+    int deleteCustomerCustomerById(Long id);
+
+    /**
+     * Deletes every customer whose id is in {@code ids} with a single statement, unknown ids are ignored.
+     *
+     * @return number of customers deleted
+     */
+    int deleteCustomersByIds(Collection<Long> ids);
 
     void updateCustomer(Customer customer);
+
+    /**
+     * Sets the non null fields on customer {@code id} in one atomic step, a taken email surfaces as the unique
+     * constraint's {@link org.springframework.dao.DuplicateKeyException}.
+     * <p>
+     * With an {@code expectedVersion} the update only applies while the customer still has that version, otherwise
+     * the outcome is {@link CustomerUpdateResult.Outcome#VERSION_MISMATCH}. A customer another writer is updating
+     * right now is not waited for, that surfaces as a
+     * {@link org.springframework.dao.PessimisticLockingFailureException}.
+     *
+     * @param expectedVersion version the caller last read, null to update whatever the version
+     */
+    CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email, Integer age);
 }
@@ -3,21 +3,32 @@ package com.vicenzo.customer.repository;
 import com.vicenzo.customer.mapper.CustomerRowMapper;
 import com.vicenzo.customer.model.Customer;
 import com.vicenzo.util.QueryExecutor;
+import com.vicenzo.util.RowMapperFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository("jdbc")
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class CustomerJDBCDataAccessRepository implements CustomerDao {
 
+    // rows pulled per round trip by the streaming cursor, postgres ignores it outside a transaction
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
     private final JdbcTemplate jdbcTemplate;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final QueryExecutor queryExecutor;
@@ -32,6 +43,31 @@ public class CustomerJDBCDataAccessRepository implements CustomerDao {
         return jdbcTemplate.query(sql, customerRowMapper);
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                """;
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, customerRowMapper);
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Long customerId) {
         var sql = """
@@ -44,13 +80,75 @@ public class CustomerJDBCDataAccessRepository implements CustomerDao {
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId) {
+        var sql = """
+                SELECT id, name, email, age, version
+                FROM customer
+                WHERE id = ?
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                        new VersionedCustomer(customerRowMapper.mapRow(rs, rowNum), rs.getLong("version")), customerId)
+                .stream().findFirst();
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        // one array parameter instead of IN (...), a single statement text the driver can keep prepared
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                customerRowMapper);
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
         var sql = """
                 INSERT INTO customer(name, email, age)
                 VALUES (?,?,?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
                 """;
-        int result = jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge());
-        System.out.println("jdbcTemplate.update =" + result);
+        Optional<Long> id = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong("id"),
+                        customer.getName(), customer.getEmail(), customer.getAge())
+                .stream().findFirst();
+        id.ifPresent(customer::setId);
+        return id;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        // one multi-row statement instead of a statement per customer; rows are inserted in list order, so of two
+        // customers sharing an email the first one is inserted and the second one conflicts
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT name, email, age
+                FROM unnest(?, ?, ?) WITH ORDINALITY AS c(name, email, age, ordinal)
+                ORDER BY ordinal
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, email
+                """;
+        Map<String, Long> insertedIds = new HashMap<>();
+        jdbcTemplate.query(sql, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("text", customers.stream().map(Customer::getName).toArray()));
+            ps.setArray(2, connection.createArrayOf("text", customers.stream().map(Customer::getEmail).toArray()));
+            ps.setArray(3, connection.createArrayOf("integer", customers.stream().map(Customer::getAge).toArray()));
+        }, rs -> {
+            insertedIds.put(rs.getString("email"), rs.getLong("id"));
+        });
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            Long id = insertedIds.remove(customers.get(i).getEmail());
+            if (id != null) {
+                customers.get(i).setId(id);
+                inserted[i] = 1;
+            }
+        }
+        return inserted;
     }
 
     @Override
@@ -64,6 +162,20 @@ public class CustomerJDBCDataAccessRepository implements CustomerDao {
         return count != null && count > 0;
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        // a single array parameter keeps the sql text identical whatever the number of emails
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(?)
+                """;
+        List<String> existing = jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email"));
+        return new HashSet<>(existing);
+    }
+
     @Override
     public boolean existsCustomerWithId(Long id) {
         var sql = """
@@ -76,13 +188,24 @@ public class CustomerJDBCDataAccessRepository implements CustomerDao {
     }
 
     @Override
-    public void deleteCustomerCustomerById(Long id) {
+    public int deleteCustomerCustomerById(Long id) {
         var sql = """
                 DELETE
                 FROM customer
                 WHERE id = ?
                 """;
-        jdbcTemplate.update(sql, id);
+        return jdbcTemplate.update(sql, id);
+    }
+
+    @Override
+    public int deleteCustomersByIds(Collection<Long> ids) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.update(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())));
     }
 
     @Override
@@ -95,6 +218,31 @@ public class CustomerJDBCDataAccessRepository implements CustomerDao {
         jdbcTemplate.update(sql, customer.getName(), customer.getEmail(), customer.getAge(), customer.getId());
     }
 
+    @Override
+    public CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email,
+                                                     Integer age) {
+        var params = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("expectedVersion", expectedVersion)
+                .addValue("name", name)
+                .addValue("email", email)
+                .addValue("age", age);
+        // a lock held by another writer fails the statement with lock_not_available, which spring's postgres error
+        // codes already translate to CannotAcquireLockException
+        return namedParameterJdbcTemplate.queryForObject(CustomerStatements.UPDATE_FIELDS, params, (rs, rowNum) -> {
+            if (!rs.getBoolean("found")) {
+                return CustomerUpdateResult.notFound();
+            }
+            if (rs.getObject("id") != null) {
+                return CustomerUpdateResult.updated(customerRowMapper.mapRow(rs, rowNum), rs.getLong("version"));
+            }
+            if (expectedVersion != null && expectedVersion != rs.getLong("current_version")) {
+                return CustomerUpdateResult.versionMismatch();
+            }
+            return CustomerUpdateResult.noChanges();
+        });
+    }
+
     public List<Customer> selectCustomersByIdsAndNames(List<Long> ids, List<String> names) {
         var sql = """
                 SELECT id, name, email, age
@@ -105,6 +253,6 @@ public class CustomerJDBCDataAccessRepository implements CustomerDao {
 
         // if namedParameterJDBCTemplate is not use we need to add the values of id in sql using comma separation
         Map<String, List<?>> paramMap = Map.of("ids", ids, "names", names);
-        return namedParameterJdbcTemplate.query(sql, paramMap, new BeanPropertyRowMapper<>(Customer.class));
+        return namedParameterJdbcTemplate.query(sql, paramMap, RowMapperFactory.forClass(Customer.class));
     }
 }
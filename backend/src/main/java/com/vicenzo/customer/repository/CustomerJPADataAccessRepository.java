@@ -3,15 +3,26 @@ package com.vicenzo.customer.repository;
 import com.vicenzo.customer.model.Customer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository("jpa")
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class CustomerJPADataAccessRepository implements CustomerDao {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+
     private final CustomerRepository customerRepository;
 
     @Override
@@ -19,14 +30,61 @@ public class CustomerJPADataAccessRepository implements CustomerDao {
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customerRepository.streamAll();
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Long customerId) {
         return customerRepository.findById(customerId);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId) {
+        return customerRepository.findRowById(customerId)
+                .map(row -> new VersionedCustomer(
+                        new Customer(row.getId(), row.getName(), row.getEmail(), row.getAge()), row.getVersion()));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return customerRepository.findAllByIdArray(ids.toArray(Long[]::new));
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        Optional<Long> id = customerRepository.insertIfEmailFree(
+                customer.getName(), customer.getEmail(), customer.getAge());
+        id.ifPresent(customer::setId);
+        return id;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return new int[0];
+        }
+        // JPA has no ON CONFLICT: taken emails are looked up first, an email taken concurrently in between still
+        // fails the batch on the unique constraint
+        Set<String> takenEmails = new HashSet<>(customerRepository.findExistingEmails(
+                customers.stream().map(Customer::getEmail).toList()));
+        List<Customer> newCustomers = new ArrayList<>(customers.size());
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            if (takenEmails.add(customers.get(i).getEmail())) {
+                newCustomers.add(customers.get(i));
+                inserted[i] = 1;
+            }
+        }
+        // ids come from pooled sequence blocks and the inserts go out in jdbc batches, see Customer
+        customerRepository.saveAllAndFlush(newCustomers);
+        return inserted;
     }
 
     @Override
@@ -34,18 +92,55 @@ public class CustomerJPADataAccessRepository implements CustomerDao {
         return customerRepository.existsCustomerByEmail(email);
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerRepository.findExistingEmails(emails);
+    }
+
     @Override
     public boolean existsCustomerWithId(Long id) {
         return customerRepository.existsCustomerById(id);
     }
 
     @Override
-    public void deleteCustomerCustomerById(Long id) {
-        customerRepository.deleteById(id);
+    public int deleteCustomerCustomerById(Long id) {
+        return customerRepository.deleteCustomerById(id);
+    }
+
+    @Override
+    public int deleteCustomersByIds(Collection<Long> ids) {
+        return customerRepository.deleteCustomersByIdIn(ids);
     }
 
     @Override
     public void updateCustomer(Customer customer) {
         customerRepository.save(customer);
     }
+
+    @Override
+    public CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email,
+                                                     Integer age) {
+        CustomerRepository.UpdatedCustomerRow row;
+        try {
+            row = customerRepository.updateFields(id, expectedVersion, name, email, age);
+        } catch (DataIntegrityViolationException e) {
+            // hibernate reports every constraint violation alike, keep the jdbc dao's exception for a taken email
+            if (e.getMostSpecificCause() instanceof SQLException sqlException
+                    && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+                throw new DuplicateKeyException(e.getMessage(), e);
+            }
+            throw e;
+        }
+        if (!row.getFound()) {
+            return CustomerUpdateResult.notFound();
+        }
+        if (row.getId() != null) {
+            return CustomerUpdateResult.updated(
+                    new Customer(row.getId(), row.getName(), row.getEmail(), row.getAge()), row.getVersion());
+        }
+        if (expectedVersion != null && !expectedVersion.equals(row.getCurrentVersion())) {
+            return CustomerUpdateResult.versionMismatch();
+        }
+        return CustomerUpdateResult.noChanges();
+    }
 }
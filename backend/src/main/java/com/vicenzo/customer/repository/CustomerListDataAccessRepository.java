@@ -1,68 +1,225 @@
 package com.vicenzo.customer.repository;
 
 import com.vicenzo.customer.model.Customer;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * In memory store used for load tests and as an in-process fallback.
+ * <p>
+ * Customers are kept in a concurrent map ordered by id, so keyset pages are a {@code tailMap} view, next to a
+ * unique email index that plays the role of {@code unique_email_constraint}. A customer only takes an email while
+ * holding that email's index entry, and every read and write works on copies so callers can never mutate stored
+ * state behind the index's back. Every insert and update gives the stored customer a new version from one
+ * sequence, like the version column of the table, so conditional updates compare and swap on it. No operation takes
+ * a lock.
+ */
 @Repository("list")
 public class CustomerListDataAccessRepository implements CustomerDao {
-    private static List<Customer> customers;
 
-    static {
-        customers = new ArrayList<>();
-        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
-        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 21);
-
-        customers.add(alex);
-        customers.add(jamila);
+    private final ConcurrentNavigableMap<Long, VersionedCustomer> customers = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Long> customerIdsByEmail = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final AtomicLong versionSequence = new AtomicLong();
 
+    public CustomerListDataAccessRepository() {
+        insertCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        insertCustomer(new Customer("Jamila", "jamila@gmail.com", 21));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return customers.values().stream()
+                .map(CustomerListDataAccessRepository::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return customers.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(CustomerListDataAccessRepository::copyOf)
+                .toList();
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return customers.values().stream()
+                .map(CustomerListDataAccessRepository::copyOf);
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Long customerId) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(customerId))
-                .findFirst();
+        return Optional.ofNullable(customers.get(customerId))
+                .map(CustomerListDataAccessRepository::copyOf);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId) {
+        return Optional.ofNullable(customers.get(customerId))
+                .map(VersionedCustomer::copy);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .distinct()
+                .map(customers::get)
+                .filter(Objects::nonNull)
+                .map(CustomerListDataAccessRepository::copyOf)
+                .toList();
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        long id = idSequence.incrementAndGet();
+        if (customerIdsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return Optional.empty();
+        }
+        customer.setId(id);
+        customers.put(id, new VersionedCustomer(new Customer(customer), versionSequence.incrementAndGet()));
+        return Optional.of(id);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            inserted[i] = insertCustomer(customers.get(i)).isPresent() ? 1 : 0;
+        }
+        return inserted;
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return customerIdsByEmail.containsKey(email);
     }
 
     @Override
-    public boolean existsCustomerWithId(Long id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(customerIdsByEmail::containsKey)
+                .collect(Collectors.toSet());
+    }
 
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return customers.containsKey(id);
     }
 
     @Override
-    public void deleteCustomerCustomerById(Long id) {
-        customers.stream()
-                .filter(c -> Objects.equals(c.getId(), id))
-                .findFirst()
-                .ifPresent(customers::remove);
+    public int deleteCustomerCustomerById(Long id) {
+        VersionedCustomer removed = customers.remove(id);
+        if (removed == null) {
+            return 0;
+        }
+        release(removed.customer().getEmail(), id);
+        return 1;
+    }
 
+    @Override
+    public int deleteCustomersByIds(Collection<Long> ids) {
+        return ids.stream()
+                .distinct()
+                .mapToInt(this::deleteCustomerCustomerById)
+                .sum();
     }
 
     @Override
     public void updateCustomer(Customer customer) {
-        customers.add(customer);
+        VersionedCustomer current;
+        VersionedCustomer updated;
+        do {
+            current = customers.get(customer.getId());
+            if (current == null) {
+                return; // like an UPDATE matching no row
+            }
+            updated = new VersionedCustomer(new Customer(customer), versionSequence.incrementAndGet());
+        } while (!replace(current, updated));
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email,
+                                                     Integer age) {
+        VersionedCustomer current;
+        VersionedCustomer updated;
+        do {
+            current = customers.get(id);
+            if (current == null) {
+                return CustomerUpdateResult.notFound();
+            }
+            if (expectedVersion != null && expectedVersion != current.version()) {
+                return CustomerUpdateResult.versionMismatch();
+            }
+            Customer customer = new Customer(id,
+                    name != null ? name : current.customer().getName(),
+                    email != null ? email : current.customer().getEmail(),
+                    age != null ? age : current.customer().getAge());
+            if (customer.equals(current.customer())) {
+                return CustomerUpdateResult.noChanges();
+            }
+            updated = new VersionedCustomer(customer, versionSequence.incrementAndGet());
+        } while (!replace(current, updated));
+        return CustomerUpdateResult.updated(copyOf(updated), updated.version());
+    }
+
+    /**
+     * Swaps {@code current} for {@code updated}, moving the email index entry if the email changed.
+     * <p>
+     * A customer only takes an email inside the compute of that email's index entry, and an email is only released
+     * inside it too, after checking the stored customer no longer holds it. Writers of the same customer can
+     * interleave in any order without the index losing the email the stored customer ends up with.
+     *
+     * @return {@code false} if another writer replaced {@code current} first
+     */
+    private boolean replace(VersionedCustomer current, VersionedCustomer updated) {
+        Long id = current.customer().getId();
+        String currentEmail = current.customer().getEmail();
+        String updatedEmail = updated.customer().getEmail();
+        if (Objects.equals(currentEmail, updatedEmail)) {
+            return customers.replace(id, current, updated);
+        }
+        AtomicBoolean replaced = new AtomicBoolean();
+        customerIdsByEmail.compute(updatedEmail, (email, owner) -> {
+            if (owner != null && !owner.equals(id)) {
+                throw new DuplicateKeyException("email [%s] already taken".formatted(email));
+            }
+            replaced.set(customers.replace(id, current, updated));
+            return replaced.get() ? id : owner;
+        });
+        if (replaced.get()) {
+            release(currentEmail, id);
+        }
+        return replaced.get();
+    }
+
+    /**
+     * Drops the index entry of {@code email} unless customer {@code id} still holds it, a concurrent writer may have
+     * moved it back.
+     */
+    private void release(String email, Long id) {
+        customerIdsByEmail.computeIfPresent(email, (released, owner) -> {
+            VersionedCustomer stored = customers.get(id);
+            boolean held = stored != null && released.equals(stored.customer().getEmail());
+            return owner.equals(id) && !held ? null : owner;
+        });
+    }
+
+    private static Customer copyOf(VersionedCustomer stored) {
+        return new Customer(stored.customer());
     }
 }
@@ -1,10 +1,94 @@
 package com.vicenzo.customer.repository;
 
 import com.vicenzo.customer.model.Customer;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     boolean existsCustomerByEmail(String email);
 
     boolean existsCustomerById(Long id);
+
+    // bulk JPQL deletes run as one statement, deleteById would load the entity first
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id IN :ids")
+    int deleteCustomersByIdIn(Collection<Long> ids);
+
+    // native: JPQL has no ON CONFLICT, the insert is a single statement that cannot race with another registration
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO customer(name, email, age)
+            VALUES (:name, :email, :age)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING id
+            """)
+    Optional<Long> insertIfEmailFree(String name, String email, Integer age);
+
+    // native: a JPQL IN expands into a different statement for every number of ids, one array parameter does not
+    @Query(nativeQuery = true, value = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE id = ANY(:ids)
+            """)
+    List<Customer> findAllByIdArray(Long[] ids);
+
+    // native: the version column belongs to the database trigger and is not mapped on the entity
+    @Query(nativeQuery = true, value = """
+            SELECT id, name, email, age, version
+            FROM customer
+            WHERE id = :id
+            """)
+    Optional<CustomerRow> findRowById(Long id);
+
+    interface CustomerRow {
+        Long getId();
+
+        String getName();
+
+        String getEmail();
+
+        Integer getAge();
+
+        Long getVersion();
+    }
+
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    // same single statement as the jdbc and r2dbc daos
+    @Transactional
+    @Query(nativeQuery = true, value = CustomerStatements.UPDATE_FIELDS)
+    UpdatedCustomerRow updateFields(Long id, Long expectedVersion, String name, String email, Integer age);
+
+    interface UpdatedCustomerRow extends CustomerRow {
+        boolean getFound();
+
+        Long getCurrentVersion();
+    }
+
+    // returning a List (not a Page) keeps Spring Data from issuing a count query
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // constructor expression returns unmanaged instances, so the persistence context does not grow while streaming
+    @Query("SELECT new com.vicenzo.customer.model.Customer(c.id, c.name, c.email, c.age) FROM Customer c")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Customer> streamAll();
 }
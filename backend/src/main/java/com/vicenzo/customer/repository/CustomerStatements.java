@@ -0,0 +1,47 @@
+package com.vicenzo.customer.repository;
+
+/**
+ * Sql shared by the jdbc, jpa and r2dbc daos, so the three keep running the very same statement. Every one of them
+ * binds the parameters by name.
+ */
+final class CustomerStatements {
+
+    /**
+     * Sets the non null fields of customer {@code :id} unless {@code :expectedVersion} is given and differs, in one
+     * statement. Data modifying CTEs and the outer query share one snapshot, so {@code found} and
+     * {@code current_version} reflect the row before the update; the updated row's columns are null when nothing was
+     * updated.
+     * <p>
+     * The version predicate alone is not enough: a second writer of the same customer would wait for the first one's
+     * row lock until it commits, and only then miss the version. {@code NOWAIT} on the target row fails it right away
+     * with {@code lock_not_available} instead, so the statement does take a row lock, held by the transaction like
+     * any update's. Writers of different customers lock different rows and never wait on each other.
+     */
+    static final String UPDATE_FIELDS = """
+            WITH target AS (
+                SELECT id, version
+                FROM customer
+                WHERE id = :id
+                FOR UPDATE NOWAIT
+            ), updated AS (
+                UPDATE customer
+                SET name = COALESCE(CAST(:name AS TEXT), name),
+                    email = COALESCE(CAST(:email AS TEXT), email),
+                    age = COALESCE(CAST(:age AS INT), age)
+                FROM target
+                WHERE customer.id = target.id
+                AND (CAST(:expectedVersion AS BIGINT) IS NULL OR target.version = CAST(:expectedVersion AS BIGINT))
+                AND (name, email, age) IS DISTINCT FROM (
+                    COALESCE(CAST(:name AS TEXT), name),
+                    COALESCE(CAST(:email AS TEXT), email),
+                    COALESCE(CAST(:age AS INT), age))
+                RETURNING customer.id, customer.name, customer.email, customer.age, customer.version
+            )
+            SELECT EXISTS (SELECT 1 FROM target) AS found, (SELECT version FROM target) AS current_version, updated.*
+            FROM (VALUES (1)) AS one
+            LEFT JOIN updated ON true
+            """;
+
+    private CustomerStatements() {
+    }
+}
@@ -0,0 +1,33 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+
+/**
+ * Outcome of {@link CustomerDao#updateCustomerFields}, {@code customer} is the updated row and {@code version} its
+ * new version, both only set when {@code outcome} is {@link Outcome#UPDATED}.
+ */
+public record CustomerUpdateResult(Outcome outcome, Customer customer, Long version) {
+
+    public enum Outcome {
+        UPDATED,
+        NO_CHANGES,
+        NOT_FOUND,
+        VERSION_MISMATCH
+    }
+
+    public static CustomerUpdateResult updated(Customer customer, Long version) {
+        return new CustomerUpdateResult(Outcome.UPDATED, customer, version);
+    }
+
+    public static CustomerUpdateResult noChanges() {
+        return new CustomerUpdateResult(Outcome.NO_CHANGES, null, null);
+    }
+
+    public static CustomerUpdateResult notFound() {
+        return new CustomerUpdateResult(Outcome.NOT_FOUND, null, null);
+    }
+
+    public static CustomerUpdateResult versionMismatch() {
+        return new CustomerUpdateResult(Outcome.VERSION_MISMATCH, null, null);
+    }
+}
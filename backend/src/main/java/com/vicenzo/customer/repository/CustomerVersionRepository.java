@@ -0,0 +1,69 @@
+package com.vicenzo.customer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+/**
+ * Reads the {@code version} column postgres maintains on {@code customer}: taken from one sequence on insert and
+ * bumped by a trigger on every update that changes the row, whatever dao or bulk path wrote it.
+ */
+@Repository
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerVersionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<Long> findVersion(Long customerId) {
+        var sql = """
+                SELECT version
+                FROM customer
+                WHERE id = ?
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong("version"), customerId)
+                .stream().findFirst();
+    }
+
+    /**
+     * Changes with every committed write to the table. A write gives the rows it inserts or updates a version above
+     * any they had, deletes lower the count. Unlike the highest version, the sum also moves when transactions commit
+     * in another order than they drew their versions. Both come from an index only scan of the version index, cheaper
+     * than reading the rows but still linear in the table size.
+     */
+    public CustomerTableVersion findTableVersion() {
+        var sql = """
+                SELECT COALESCE(SUM(version), 0) AS version_sum, COUNT(*) AS row_count
+                FROM customer
+                """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) ->
+                new CustomerTableVersion(rs.getBigDecimal("version_sum").toBigInteger(), rs.getLong("row_count")));
+    }
+
+    /**
+     * Fingerprint of the ids and versions of the first {@code limit} customers after {@code afterId}, read from the
+     * page's own id range, so it costs as much as the page and not the table. It changes whenever a write changes
+     * which customers the page holds or any of them.
+     *
+     * @return empty when there is no customer after {@code afterId}
+     */
+    public Optional<String> findPageVersion(long afterId, int limit) {
+        var sql = """
+                SELECT md5(string_agg(id || ':' || version, ',' ORDER BY id)) AS page_version
+                FROM (
+                    SELECT id, version
+                    FROM customer
+                    WHERE id > ?
+                    ORDER BY id
+                    LIMIT ?
+                ) page
+                """;
+        return Optional.ofNullable(jdbcTemplate.queryForObject(sql, String.class, afterId, limit));
+    }
+
+    public record CustomerTableVersion(BigInteger versionSum, long rowCount) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.vicenzo.customer.repository;
+
+/**
+ * Published once customers were written without going through {@link CustomerDao}, for instance by the COPY based
+ * csv import, so anything caching dao answers can drop what it may now have wrong.
+ *
+ * @param inserted number of customers written
+ */
+public record CustomersBulkLoadedEvent(long inserted) {
+}
@@ -0,0 +1,109 @@
+package com.vicenzo.customer.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe, add only Bloom filter over email addresses.
+ * <p>
+ * Bits live in an {@link AtomicLongArray} set with CAS, so concurrent writers never lose each other's bits and
+ * readers never block. The {@code k} probe positions come from two 64 bit hashes combined as
+ * {@code h1 + i * h2} (Kirsch-Mitzenmacher).
+ */
+final class EmailBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong bitsSet = new AtomicLong();
+
+    private EmailBloomFilter(long bitCount, int hashCount) {
+        this.words = new AtomicLongArray(Math.toIntExact(bitCount >>> 6));
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Sizes the filter for {@code expectedInsertions} at {@code falsePositiveRate}, shrunk to {@code maxBytes} when
+     * that needs more memory, in which case the false positive rate at {@code expectedInsertions} is higher.
+     */
+    static EmailBloomFilter create(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+        long n = Math.max(1, expectedInsertions);
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2));
+        long maxBits = Math.min(maxBytes, (long) Integer.MAX_VALUE * Long.BYTES) * Byte.SIZE;
+        long bits = Math.max(Long.SIZE, Math.min(optimalBits, maxBits));
+        bits = (bits + Long.SIZE - 1) & -Long.SIZE;
+        int hashes = (int) Math.max(1, Math.min(30, Math.round((double) bits / n * LN2)));
+        return new EmailBloomFilter(bits, hashes);
+    }
+
+    void put(String email) {
+        long h1 = hash(email);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0) {
+                long witness = words.compareAndExchange(index, word, word | mask);
+                if (witness == word) {
+                    bitsSet.incrementAndGet();
+                    break;
+                }
+                word = witness;
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} only if {@code email} was never {@link #put(String) put}
+     */
+    boolean mightContain(String email) {
+        long h1 = hash(email);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False positive rate implied by the current fill, {@code (bits set / bits) ^ k}.
+     */
+    double expectedFalsePositiveRate() {
+        return Math.pow((double) bitsSet.get() / bitCount, hashCount);
+    }
+
+    long sizeInBytes() {
+        return bitCount / Byte.SIZE;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    // FNV-1a over the utf-16 chars, finished with the murmur3 mixer for avalanche
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
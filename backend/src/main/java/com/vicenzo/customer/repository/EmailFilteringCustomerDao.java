@@ -0,0 +1,255 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link CustomerDao} decorator answering "email not taken" from a Bloom filter over every stored email, so the
+ * common case of registering a new email never reaches the wrapped dao.
+ * <p>
+ * The filter is add only: emails freed by a delete or an email change stay in it and merely cost a database check
+ * until the next {@link #rebuild()}. Written emails are added before the write, so concurrent checks already see
+ * them, and again once the surrounding transaction committed, which puts them into a filter being rebuilt if its
+ * scan started before the commit. While no complete filter exists every check goes to the wrapped dao.
+ */
+public class EmailFilteringCustomerDao implements CustomerDao, MeterBinder {
+
+    private final CustomerDao delegate;
+    private final String name;
+    private final long expectedEmails;
+    private final double falsePositiveRate;
+    private final long maxBytes;
+
+    private volatile EmailBloomFilter active;
+    private volatile EmailBloomFilter building;
+
+    private final LongAdder definitelyAbsent = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder present = new LongAdder();
+    private final LongAdder unfiltered = new LongAdder();
+
+    public EmailFilteringCustomerDao(CustomerDao delegate, String name,
+                                     long expectedEmails, double falsePositiveRate, long maxBytes) {
+        this.delegate = delegate;
+        this.name = name;
+        this.expectedEmails = expectedEmails;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Builds a fresh filter from a streaming scan of the wrapped dao and swaps it in, dropping emails that are no
+     * longer stored. Checks bypass the filter until the scan is over. Needs a transaction for the scan to stream.
+     */
+    public synchronized void rebuild() {
+        EmailBloomFilter next = EmailBloomFilter.create(expectedEmails, falsePositiveRate, maxBytes);
+        building = next;
+        active = null;
+        try (Stream<Customer> customers = delegate.streamAllCustomers()) {
+            customers.forEach(customer -> next.put(customer.getEmail()));
+            active = next;
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * Stops answering from the filter, for writes that bypass this dao, until the next {@link #rebuild()}.
+     */
+    public void suspend() {
+        active = null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String description = "email checks by outcome, false_positive went to the database and found nothing";
+        bindOutcome(registry, "absent", definitelyAbsent, description);
+        bindOutcome(registry, "false_positive", falsePositives, description);
+        bindOutcome(registry, "present", present, description);
+        bindOutcome(registry, "unfiltered", unfiltered, description);
+        Gauge.builder("customer.email.filter.false.positive.rate", this,
+                        EmailFilteringCustomerDao::observedFalsePositiveRate)
+                .description("false positives / emails not taken, as observed by the filter")
+                .tag("dao", name)
+                .register(registry);
+        Gauge.builder("customer.email.filter.expected.false.positive.rate", this,
+                        dao -> dao.active == null ? Double.NaN : dao.active.expectedFalsePositiveRate())
+                .description("false positive rate implied by the current fill of the filter")
+                .tag("dao", name)
+                .register(registry);
+        Gauge.builder("customer.email.filter.size", this,
+                        dao -> dao.active == null ? 0 : dao.active.sizeInBytes())
+                .baseUnit("bytes")
+                .tag("dao", name)
+                .register(registry);
+    }
+
+    private void bindOutcome(MeterRegistry registry, String result, LongAdder counter, String description) {
+        FunctionCounter.builder("customer.email.filter.checks", counter, LongAdder::sum)
+                .description(description)
+                .tags("dao", name, "result", result)
+                .register(registry);
+    }
+
+    double observedFalsePositiveRate() {
+        double negatives = falsePositives.sum() + definitelyAbsent.sum();
+        return negatives == 0 ? 0 : falsePositives.sum() / negatives;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        EmailBloomFilter filter = active;
+        if (filter == null) {
+            unfiltered.increment();
+            return delegate.existsCustomerWithEmail(email);
+        }
+        if (!filter.mightContain(email)) {
+            definitelyAbsent.increment();
+            return false;
+        }
+        boolean exists = delegate.existsCustomerWithEmail(email);
+        (exists ? present : falsePositives).increment();
+        return exists;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        EmailBloomFilter filter = active;
+        if (filter == null) {
+            unfiltered.add(emails.size());
+            return delegate.selectExistingEmails(emails);
+        }
+        List<String> candidates = emails.stream()
+                .filter(filter::mightContain)
+                .toList();
+        definitelyAbsent.add(emails.size() - candidates.size());
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> existing = delegate.selectExistingEmails(candidates);
+        present.add(existing.size());
+        falsePositives.add(candidates.stream().distinct().count() - existing.size());
+        return existing;
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        List<String> emails = List.of(customer.getEmail());
+        put(emails);
+        Optional<Long> id = delegate.insertCustomer(customer);
+        putOnceCommitted(emails);
+        return id;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        List<String> emails = customers.stream().map(Customer::getEmail).collect(Collectors.toList());
+        put(emails);
+        int[] inserted = delegate.insertCustomers(customers);
+        putOnceCommitted(emails);
+        return inserted;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        List<String> emails = List.of(customer.getEmail());
+        put(emails);
+        delegate.updateCustomer(customer);
+        putOnceCommitted(emails);
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email,
+                                                     Integer age) {
+        if (email == null) {
+            return delegate.updateCustomerFields(id, expectedVersion, name, null, age);
+        }
+        List<String> emails = List.of(email);
+        put(emails);
+        CustomerUpdateResult result = delegate.updateCustomerFields(id, expectedVersion, name, email, age);
+        putOnceCommitted(emails);
+        return result;
+    }
+
+    private void putOnceCommitted(List<String> emails) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(emails);
+        } else {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(emails);
+                }
+            });
+        }
+    }
+
+    private void put(List<String> emails) {
+        EmailBloomFilter filter = active;
+        if (filter != null) {
+            emails.forEach(filter::put);
+        }
+        filter = building;
+        if (filter != null) {
+            emails.forEach(filter::put);
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return delegate.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long customerId) {
+        return delegate.selectCustomerById(customerId);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId) {
+        return delegate.selectVersionedCustomerById(customerId);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public int deleteCustomerCustomerById(Long id) {
+        return delegate.deleteCustomerCustomerById(id);
+    }
+
+    @Override
+    public int deleteCustomersByIds(Collection<Long> ids) {
+        return delegate.deleteCustomersByIds(ids);
+    }
+}
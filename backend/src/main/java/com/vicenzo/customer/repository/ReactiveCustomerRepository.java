@@ -0,0 +1,203 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.config.CustomerR2dbcProperties;
+import com.vicenzo.customer.model.Customer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Non blocking counterpart of {@link CustomerDao} on R2DBC, used by the reactive api.
+ * <p>
+ * The connection pool is deliberately not a bean: a {@code ConnectionFactory} bean would make spring boot back off
+ * from creating the JDBC {@code DataSource} that flyway and the blocking daos still need.
+ */
+@Profile("reactive")
+@Repository
+public class ReactiveCustomerRepository implements DisposableBean {
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+    private final int fetchSize;
+
+    @Autowired
+    public ReactiveCustomerRepository(CustomerR2dbcProperties properties) {
+        this(new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(
+                                ConnectionFactoryOptions.parse(properties.url()).mutate()
+                                        .option(ConnectionFactoryOptions.USER, properties.username())
+                                        .option(ConnectionFactoryOptions.PASSWORD, properties.password())
+                                        .build()))
+                        .initialSize(0)
+                        .maxSize(properties.maxSize())
+                        .maxIdleTime(properties.maxIdleTime())
+                        .build()),
+                properties.fetchSize());
+    }
+
+    ReactiveCustomerRepository(ConnectionFactory connectionFactory, int fetchSize) {
+        this.connectionFactory = connectionFactory;
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Streams every customer. Rows are fetched {@code fetchSize} at a time as the subscriber requests them, so a
+     * slow consumer slows down the query instead of buffering the table.
+     */
+    public Flux<Customer> findAll() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                ORDER BY id
+                """;
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(ReactiveCustomerRepository::toCustomer)
+                .all();
+    }
+
+    /**
+     * Keyset page, see {@link CustomerDao#selectCustomersAfterId}.
+     */
+    public Flux<Customer> findAfterId(Long afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """;
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(ReactiveCustomerRepository::toCustomer)
+                .all();
+    }
+
+    public Mono<Customer> findById(Long id) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(ReactiveCustomerRepository::toCustomer)
+                .one();
+    }
+
+    /**
+     * See {@link CustomerDao#selectCustomersByIds}.
+     */
+    public Flux<Customer> findByIds(Collection<Long> ids) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = ANY(:ids)
+                """;
+        return databaseClient.sql(sql)
+                .bind("ids", ids.toArray(Long[]::new))
+                .map(ReactiveCustomerRepository::toCustomer)
+                .all();
+    }
+
+    /**
+     * @return the new customer's id, empty when the email is taken
+     */
+    public Mono<Long> insert(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .doOnNext(customer::setId);
+    }
+
+    /**
+     * @return number of customers deleted
+     */
+    public Mono<Long> deleteById(Long id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Same single statement as {@link CustomerJDBCDataAccessRepository#updateCustomerFields}, a taken email
+     * surfaces as a {@link org.springframework.dao.DuplicateKeyException} and a row locked by another writer as a
+     * {@link CannotAcquireLockException}.
+     */
+    public Mono<CustomerUpdateResult> updateFields(Long id, Long expectedVersion, String name, String email,
+                                                   Integer age) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(CustomerStatements.UPDATE_FIELDS).bind("id", id);
+        spec = expectedVersion == null
+                ? spec.bindNull("expectedVersion", Long.class)
+                : spec.bind("expectedVersion", expectedVersion);
+        spec = name == null ? spec.bindNull("name", String.class) : spec.bind("name", name);
+        spec = email == null ? spec.bindNull("email", String.class) : spec.bind("email", email);
+        spec = age == null ? spec.bindNull("age", Integer.class) : spec.bind("age", age);
+        return spec.map(row -> {
+                    if (!Boolean.TRUE.equals(row.get("found", Boolean.class))) {
+                        return CustomerUpdateResult.notFound();
+                    }
+                    if (row.get("id") != null) {
+                        return CustomerUpdateResult.updated(toCustomer(row), row.get("version", Long.class));
+                    }
+                    if (expectedVersion != null && !expectedVersion.equals(row.get("current_version", Long.class))) {
+                        return CustomerUpdateResult.versionMismatch();
+                    }
+                    return CustomerUpdateResult.noChanges();
+                })
+                .one()
+                // the driver files postgres' lock_not_available under generic resource failures
+                .onErrorMap(e -> e instanceof DataAccessException dataAccessException
+                                && dataAccessException.getMostSpecificCause() instanceof R2dbcException r2dbcException
+                                && LOCK_NOT_AVAILABLE.equals(r2dbcException.getSqlState()),
+                        e -> new CannotAcquireLockException(e.getMessage(), e));
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof ConnectionPool connectionPool) {
+            connectionPool.dispose();
+        }
+    }
+
+    private static Customer toCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class)
+        );
+    }
+}
@@ -0,0 +1,201 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * {@link CustomerDao} decorator letting concurrent lookups of the same customer share one query: the first caller
+ * runs it, callers arriving while it is in flight wait for its result instead of sending an identical one. Nothing
+ * is kept once the query returned, this is not a cache.
+ * <p>
+ * Plain and versioned lookups of an id share one versioned query, so the version a caller gets always belongs to the
+ * customer it got, even when it joined a query that started before a write. Every caller gets its own copy of the
+ * customer. Callers in a read-write transaction query on their own, they may have to see their own uncommitted
+ * writes. With {@code replicaReads} so do callers in a read-only transaction: a replica may be behind the primary,
+ * and a client reading its own writes must not join a lookup another client sent to such a replica. A write through
+ * this dao detaches the lookups in flight for the ids it touches once it returned and again after the surrounding
+ * transaction committed, so a caller never joins a query that started before its own write.
+ */
+public class SingleFlightCustomerDao implements CustomerDao, MeterBinder {
+
+    private final CustomerDao delegate;
+    private final String name;
+    private final boolean replicaReads;
+    private final ConcurrentMap<Long, CompletableFuture<Optional<VersionedCustomer>>> inFlight =
+            new ConcurrentHashMap<>();
+    private final LongAdder queried = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param replicaReads whether read-only transactions may read from a replica, see {@code read-replicas.enabled}
+     */
+    public SingleFlightCustomerDao(CustomerDao delegate, String name, boolean replicaReads) {
+        this.delegate = delegate;
+        this.name = name;
+        this.replicaReads = replicaReads;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindLookups(registry, "queried", queried);
+        bindLookups(registry, "coalesced", coalesced);
+    }
+
+    private void bindLookups(MeterRegistry registry, String result, LongAdder counter) {
+        FunctionCounter.builder("customer.single.flight.lookups", counter, LongAdder::sum)
+                .description("customer lookups by id, coalesced ones waited for another caller's query")
+                .tags("dao", name, "result", result)
+                .register(registry);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Long customerId) {
+        return selectVersionedCustomerById(customerId).map(VersionedCustomer::customer);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> selectVersionedCustomerById(Long customerId) {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !readOnly || replicaReads && readOnly) {
+            return delegate.selectVersionedCustomerById(customerId);
+        }
+        CompletableFuture<Optional<VersionedCustomer>> query = new CompletableFuture<>();
+        CompletableFuture<Optional<VersionedCustomer>> pending = inFlight.putIfAbsent(customerId, query);
+        if (pending != null) {
+            coalesced.increment();
+            return await(pending).map(VersionedCustomer::copy);
+        }
+        queried.increment();
+        try {
+            query.complete(delegate.selectVersionedCustomerById(customerId));
+        } catch (RuntimeException | Error e) {
+            query.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(customerId, query);
+        }
+        return query.join().map(VersionedCustomer::copy);
+    }
+
+    private static <T> T await(CompletableFuture<T> query) {
+        try {
+            return query.join();
+        } catch (CompletionException e) {
+            // the querying caller's exception as is, callers translate data access exceptions by type
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Long afterId, int limit) {
+        return delegate.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Long> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public Optional<Long> insertCustomer(Customer customer) {
+        Optional<Long> id = delegate.insertCustomer(customer);
+        id.ifPresent(inserted -> detach(() -> inFlight.remove(inserted)));
+        return id;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = delegate.insertCustomers(customers);
+        // ids are not always known after a batch insert
+        detach(inFlight::clear);
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Long id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public int deleteCustomerCustomerById(Long id) {
+        int deleted = delegate.deleteCustomerCustomerById(id);
+        detach(() -> inFlight.remove(id));
+        return deleted;
+    }
+
+    @Override
+    public int deleteCustomersByIds(Collection<Long> ids) {
+        int deleted = delegate.deleteCustomersByIds(ids);
+        detach(() -> ids.forEach(inFlight::remove));
+        return deleted;
+    }
+
+    @Override
+    public void updateCustomer(Customer customer) {
+        delegate.updateCustomer(customer);
+        detach(() -> inFlight.remove(customer.getId()));
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomerFields(Long id, Long expectedVersion, String name, String email,
+                                                     Integer age) {
+        CustomerUpdateResult result = delegate.updateCustomerFields(id, expectedVersion, name, email, age);
+        if (result.outcome() == CustomerUpdateResult.Outcome.UPDATED) {
+            detach(() -> inFlight.remove(id));
+        }
+        return result;
+    }
+
+    private static void detach(Runnable detachment) {
+        detachment.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    detachment.run();
+                }
+            });
+        }
+    }
+}
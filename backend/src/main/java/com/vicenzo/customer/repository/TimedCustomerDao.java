@@ -0,0 +1,154 @@
+package com.vicenzo.customer.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Times every call of a {@link CustomerDao} and records how many rows it returned or changed.
+ * <p>
+ * The dao is wrapped in a JDK proxy, so methods added to the interface later are timed without touching this
+ * class. Timers are {@code customer.dao} tagged with the dao's name, the method as {@code operation}, the
+ * {@code outcome} ({@code success} or {@code error}) and the {@code exception}; row counts are the
+ * {@code customer.dao.rows} summary. Timers publish percentile histograms, row counts decade buckets. A stream's
+ * rows are recorded when the stream is closed. Nothing is recorded before {@link #bindTo} was called.
+ */
+public class TimedCustomerDao implements InvocationHandler, MeterBinder {
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final CustomerDao delegate;
+    private final String name;
+    private final ConcurrentMap<Method, OperationMeters> meters = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public TimedCustomerDao(CustomerDao delegate, String name) {
+        this.delegate = delegate;
+        this.name = name;
+    }
+
+    public CustomerDao proxy() {
+        return (CustomerDao) Proxy.newProxyInstance(
+                CustomerDao.class.getClassLoader(), new Class<?>[]{CustomerDao.class}, this);
+    }
+
+    /**
+     * Registers the success timer and row summary of every operation up front, so they show up before the first
+     * call.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (Method method : CustomerDao.class.getMethods()) {
+            meters(method);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class || registry == null) {
+            return invokeDelegate(method, args);
+        }
+        OperationMeters operationMeters = meters(method);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invokeDelegate(method, args);
+        } catch (Throwable e) {
+            error(operationMeters, method, e).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        operationMeters.success().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (result instanceof Stream<?> stream) {
+            AtomicLong rows = new AtomicLong();
+            // a filter, unlike peek or map, is never skipped by count() on a sized stream
+            return stream.filter(row -> rows.incrementAndGet() > 0)
+                    .onClose(() -> operationMeters.rows().record(rows.get()));
+        }
+        rows(result).ifPresent(operationMeters.rows()::record);
+        return result;
+    }
+
+    private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private OperationMeters meters(Method method) {
+        return meters.computeIfAbsent(method, key -> new OperationMeters(
+                timer(key.getName(), "success", NO_EXCEPTION),
+                new ConcurrentHashMap<>(),
+                DistributionSummary.builder("customer.dao.rows")
+                        .description("rows returned or changed by a customer dao call")
+                        .baseUnit("rows")
+                        .tag("dao", name)
+                        .tag("operation", key.getName())
+                        // decades are enough to tell single rows from pages from full scans
+                        .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000)
+                        .register(registry)));
+    }
+
+    private Timer error(OperationMeters operationMeters, Method method, Throwable e) {
+        return operationMeters.errors().computeIfAbsent(e.getClass(),
+                exceptionClass -> timer(method.getName(), "error", exceptionClass.getSimpleName()));
+    }
+
+    private Timer timer(String operation, String outcome, String exception) {
+        return Timer.builder("customer.dao")
+                .description("customer dao calls")
+                .tag("dao", name)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Rows in a result: collection sizes, 0 or 1 for optionals and updates, affected row counts. Empty for
+     * results that are not rows, like existence checks.
+     */
+    private static Optional<Long> rows(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return Optional.of((long) collection.size());
+        }
+        if (result instanceof Optional<?> optional) {
+            return Optional.of(optional.isPresent() ? 1L : 0L);
+        }
+        if (result instanceof Integer count) {
+            return Optional.of(count.longValue());
+        }
+        if (result instanceof int[] counts) {
+            long total = 0;
+            for (int count : counts) {
+                total += Math.max(count, 0);
+            }
+            return Optional.of(total);
+        }
+        if (result instanceof CustomerUpdateResult updateResult) {
+            return Optional.of(updateResult.outcome() == CustomerUpdateResult.Outcome.UPDATED ? 1L : 0L);
+        }
+        return Optional.empty();
+    }
+
+    private record OperationMeters(Timer success, Map<Class<?>, Timer> errors, DistributionSummary rows) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+
+/**
+ * A customer and the version of the very row it was read from, so the version is an ETag of exactly this customer.
+ */
+public record VersionedCustomer(Customer customer, long version) {
+
+    /**
+     * Copy whose customer callers may mutate.
+     */
+    public VersionedCustomer copy() {
+        return new VersionedCustomer(new Customer(customer), version);
+    }
+}
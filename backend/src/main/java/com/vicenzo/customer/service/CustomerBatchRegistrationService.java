@@ -0,0 +1,172 @@
+package com.vicenzo.customer.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vicenzo.customer.config.CustomerBatchProperties;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.dto.CustomerRegistrationResult;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.exception.RequestValidationException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerBatchRegistrationService {
+
+    @Qualifier("jdbc")
+    private final CustomerDao customerDao;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final CustomerBatchProperties properties;
+
+    /**
+     * Registers a JSON array of customers read incrementally from {@code body} and writes the outcome of each item to
+     * {@code outputStream} as a JSON array, so only one chunk of requests and results is held in memory. Each chunk
+     * costs one duplicate lookup and one batched insert committed on its own, its results are flushed right after.
+     * <p>
+     * A malformed element in the first chunk fails the whole request before anything is written. Further on, the
+     * chunks before it stay committed, the items read before it are registered and it is reported as the last,
+     * invalid, result; the items after it are not read.
+     */
+    public void registerCustomers(InputStream body, OutputStream outputStream) throws IOException {
+        Set<String> seenEmails = new HashSet<>();
+        List<CustomerRegistrationRequest> chunk = new ArrayList<>(properties.chunkSize());
+
+        try (MappingIterator<CustomerRegistrationRequest> requests = objectMapper
+                .readerFor(CustomerRegistrationRequest.class)
+                .readValues(body);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // the servlet container owns the response stream, and flushing it commits the response: it is only flushed
+            // once results are written, so a failure before that can still be answered with an error status
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            int index = 0;
+            try {
+                while (hasNext(requests, index)) {
+                    chunk.add(next(requests, index));
+                    index++;
+                    if (chunk.size() == properties.chunkSize()) {
+                        write(generator, outputStream, registerChunk(chunk, index - chunk.size(), seenEmails));
+                        chunk.clear();
+                    }
+                }
+            } catch (RequestValidationException e) {
+                if (generator.getOutputContext().inRoot()) {
+                    throw e;
+                }
+                // the response is already under way, the client learns where reading stopped from the last result
+                write(generator, outputStream, registerChunk(chunk, index - chunk.size(), seenEmails));
+                chunk.clear();
+                write(generator, outputStream, List.of(CustomerRegistrationResult.invalid(index, null, e.getMessage())));
+            }
+            if (!chunk.isEmpty()) {
+                write(generator, outputStream, registerChunk(chunk, index - chunk.size(), seenEmails));
+            }
+            if (generator.getOutputContext().inRoot()) {
+                generator.writeStartArray();
+            }
+            generator.writeEndArray();
+            generator.flush();
+            outputStream.flush();
+        }
+    }
+
+    private static void write(JsonGenerator generator,
+                              OutputStream outputStream,
+                              List<CustomerRegistrationResult> results) throws IOException {
+        if (generator.getOutputContext().inRoot()) {
+            generator.writeStartArray();
+        }
+        for (CustomerRegistrationResult result : results) {
+            generator.writeObject(result);
+        }
+        generator.flush();
+        outputStream.flush();
+    }
+
+    private static boolean hasNext(MappingIterator<?> requests, int index) {
+        try {
+            return requests.hasNextValue();
+        } catch (IOException e) {
+            throw malformed(index);
+        }
+    }
+
+    private static CustomerRegistrationRequest next(MappingIterator<CustomerRegistrationRequest> requests, int index) {
+        try {
+            return requests.nextValue();
+        } catch (IOException e) {
+            throw malformed(index);
+        }
+    }
+
+    private static RequestValidationException malformed(int index) {
+        return new RequestValidationException("malformed customer at index [%s]".formatted(index));
+    }
+
+    private List<CustomerRegistrationResult> registerChunk(List<CustomerRegistrationRequest> chunk,
+                                                           int firstIndex,
+                                                           Set<String> seenEmails) {
+        CustomerRegistrationResult[] results = new CustomerRegistrationResult[chunk.size()];
+        List<Integer> candidates = new ArrayList<>();
+
+        // reject invalid items and duplicates within the request itself before touching the database
+        for (int i = 0; i < chunk.size(); i++) {
+            CustomerRegistrationRequest request = chunk.get(i);
+            Optional<String> error = CustomerRegistrationValidator.validate(request);
+            if (error.isPresent()) {
+                results[i] = CustomerRegistrationResult.invalid(firstIndex + i, request.email(), error.get());
+            } else if (!seenEmails.add(request.email())) {
+                results[i] = CustomerRegistrationResult.duplicate(firstIndex + i, request.email());
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            Set<String> existingEmails = customerDao.selectExistingEmails(
+                    candidates.stream().map(i -> chunk.get(i).email()).toList());
+
+            List<Integer> toInsert = new ArrayList<>();
+            for (Integer i : candidates) {
+                if (existingEmails.contains(chunk.get(i).email())) {
+                    results[i] = CustomerRegistrationResult.duplicate(firstIndex + i, chunk.get(i).email());
+                } else {
+                    toInsert.add(i);
+                }
+            }
+
+            if (!toInsert.isEmpty()) {
+                List<Customer> customers = toInsert.stream()
+                        .map(chunk::get)
+                        .map(r -> new Customer(r.name(), r.email(), r.age()))
+                        .toList();
+                int[] inserted = transactionTemplate.execute(status -> customerDao.insertCustomers(customers));
+                for (int j = 0; j < toInsert.size(); j++) {
+                    int i = toInsert.get(j);
+                    // 0 means the email was registered concurrently after our duplicate lookup
+                    results[i] = inserted != null && inserted[j] == 0
+                            ? CustomerRegistrationResult.duplicate(firstIndex + i, chunk.get(i).email())
+                            : CustomerRegistrationResult.created(firstIndex + i, chunk.get(i).email());
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+}
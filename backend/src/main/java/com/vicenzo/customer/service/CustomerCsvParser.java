@@ -0,0 +1,292 @@
+package com.vicenzo.customer.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a {@code name,email,age} CSV file into postgres COPY (csv format) rows.
+ * <p>
+ * The file is memory mapped one segment at a time and each segment is split on line boundaries
+ * into chunks parsed in parallel with fork/join. Rows are validated with the same rules as every other
+ * registration path and prefixed with their byte offset in the file, which keeps file order for the merge.
+ * Quoted fields may contain commas and escaped quotes but not line breaks.
+ */
+final class CustomerCsvParser {
+
+    static final String HEADER = "name,email,age";
+
+    private CustomerCsvParser() {
+    }
+
+    record Options(long segmentSize, int splitSize, int maxReportedErrors) {
+    }
+
+    record RowError(long line, String message) {
+    }
+
+    @FunctionalInterface
+    interface SegmentConsumer {
+        void accept(ParsedChunk segment) throws IOException;
+    }
+
+    /**
+     * Result of parsing a contiguous range of lines, line numbers in {@link #errors()} are relative to the range
+     * until the whole segment has been parsed.
+     */
+    static final class ParsedChunk {
+        private final List<byte[]> copyRows = new ArrayList<>();
+        private final List<RowError> errors = new ArrayList<>();
+        private long lines;
+        private long validRows;
+        private long invalidRows;
+
+        List<byte[]> copyRows() {
+            return copyRows;
+        }
+
+        List<RowError> errors() {
+            return errors;
+        }
+
+        long lines() {
+            return lines;
+        }
+
+        long validRows() {
+            return validRows;
+        }
+
+        long invalidRows() {
+            return invalidRows;
+        }
+
+        private ParsedChunk append(ParsedChunk next, int maxErrors) {
+            copyRows.addAll(next.copyRows);
+            for (RowError error : next.errors) {
+                if (errors.size() == maxErrors) {
+                    break;
+                }
+                errors.add(new RowError(lines + error.line(), error.message()));
+            }
+            lines += next.lines;
+            validRows += next.validRows;
+            invalidRows += next.invalidRows;
+            return this;
+        }
+
+        private ParsedChunk shiftLines(long offset) {
+            errors.replaceAll(error -> new RowError(offset + error.line(), error.message()));
+            return this;
+        }
+    }
+
+    /**
+     * Parses {@code file} segment by segment, handing every parsed segment to {@code consumer} in file order
+     * so at most one segment of COPY rows is held in memory.
+     */
+    static void parse(Path file, Options options, ForkJoinPool pool, SegmentConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = headerLength(channel, size);
+            long lineBase = position > 0 ? 1 : 0;
+
+            while (position < size) {
+                long end = alignToLineStart(channel, Math.min(position + options.segmentSize(), size), size);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+                ParsedChunk parsed = pool.invoke(new ParseTask(segment, 0, segment.limit(), position, options));
+                consumer.accept(parsed.shiftLines(lineBase));
+                lineBase += parsed.lines();
+                position = end;
+            }
+        }
+    }
+
+    private static long headerLength(FileChannel channel, long size) throws IOException {
+        long firstLineEnd = alignToLineStart(channel, 1, size);
+        ByteBuffer firstLine = ByteBuffer.allocate((int) Math.min(firstLineEnd, HEADER.length() + 8));
+        channel.read(firstLine, 0);
+        String header = new String(firstLine.array(), 0, firstLine.position(), StandardCharsets.UTF_8).strip();
+        return header.equalsIgnoreCase(HEADER) ? firstLineEnd : 0;
+    }
+
+    /**
+     * Smallest offset at or after {@code offset} that starts a line, or {@code size}.
+     */
+    private static long alignToLineStart(FileChannel channel, long offset, long size) throws IOException {
+        if (offset <= 0 || offset >= size) {
+            return Math.min(Math.max(offset, 0), size);
+        }
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        long position = offset - 1;
+        while (position < size) {
+            block.clear();
+            int read = channel.read(block, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static final class ParseTask extends RecursiveTask<ParsedChunk> {
+        private final ByteBuffer segment;
+        private final int from;
+        private final int to;
+        private final long fileOffset;
+        private final Options options;
+
+        private ParseTask(ByteBuffer segment, int from, int to, long fileOffset, Options options) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+            this.fileOffset = fileOffset;
+            this.options = options;
+        }
+
+        @Override
+        protected ParsedChunk compute() {
+            if (to - from > options.splitSize()) {
+                int middle = alignToLineStart(from + (to - from) / 2);
+                if (middle > from && middle < to) {
+                    ParseTask left = new ParseTask(segment, from, middle, fileOffset, options);
+                    ParseTask right = new ParseTask(segment, middle, to, fileOffset, options);
+                    left.fork();
+                    ParsedChunk rightChunk = right.compute();
+                    return left.join().append(rightChunk, options.maxReportedErrors());
+                }
+            }
+            return parseLines();
+        }
+
+        // only absolute reads are used on the shared buffer, which makes it safe to read from several workers
+        private int alignToLineStart(int index) {
+            for (int i = index - 1; i < to; i++) {
+                if (segment.get(i) == '\n') {
+                    return i + 1;
+                }
+            }
+            return to;
+        }
+
+        private ParsedChunk parseLines() {
+            ParsedChunk chunk = new ParsedChunk();
+            StringBuilder copyRows = new StringBuilder();
+            int lineStart = from;
+            for (int i = from; i <= to; i++) {
+                if (i == to || segment.get(i) == '\n') {
+                    if (i > lineStart || i < to) {
+                        chunk.lines++;
+                        parseLine(lineStart, i, chunk, copyRows);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            chunk.copyRows.add(copyRows.toString().getBytes(StandardCharsets.UTF_8));
+            return chunk;
+        }
+
+        private void parseLine(int start, int end, ParsedChunk chunk, StringBuilder copyRows) {
+            if (end > start && segment.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end == start) {
+                return; // blank lines are skipped silently
+            }
+            byte[] bytes = new byte[end - start];
+            segment.get(start, bytes);
+            String line = new String(bytes, StandardCharsets.UTF_8);
+
+            Optional<String> error = appendCopyRow(line, fileOffset + start, copyRows);
+            if (error.isPresent()) {
+                chunk.invalidRows++;
+                if (chunk.errors.size() < options.maxReportedErrors()) {
+                    chunk.errors.add(new RowError(chunk.lines, error.get()));
+                }
+            } else {
+                chunk.validRows++;
+            }
+        }
+    }
+
+    private static Optional<String> appendCopyRow(String line, long position, StringBuilder copyRows) {
+        List<String> fields = splitFields(line);
+        if (fields == null) {
+            return Optional.of("unbalanced quotes");
+        }
+        if (fields.size() != 3) {
+            return Optional.of("expected 3 fields but found %s".formatted(fields.size()));
+        }
+        Integer age;
+        try {
+            age = fields.get(2).isBlank() ? null : Integer.valueOf(fields.get(2).strip());
+        } catch (NumberFormatException e) {
+            return Optional.of("age is not a number");
+        }
+        String name = fields.get(0);
+        String email = fields.get(1);
+        Optional<String> error = CustomerRegistrationValidator.validate(name, email, age);
+        if (error.isPresent()) {
+            return error;
+        }
+
+        copyRows.append(position).append(',');
+        appendQuoted(name, copyRows).append(',');
+        appendQuoted(email, copyRows).append(',');
+        copyRows.append(age).append('\n');
+        return Optional.empty();
+    }
+
+    /**
+     * RFC 4180 style split, returns {@code null} when a quoted field is not closed.
+     */
+    static List<String> splitFields(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static StringBuilder appendQuoted(String value, StringBuilder target) {
+        return target.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,54 @@
+package com.vicenzo.customer.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerExportService {
+
+    // flush regularly so the client starts receiving data long before the last row is read
+    private static final int FLUSH_EVERY_ROWS = 1_000;
+
+    @Qualifier("jdbc")
+    private final CustomerDao customerDao;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writes every customer as newline-delimited JSON. Rows are read from a server side cursor,
+     * which postgres only honours inside a transaction, so memory use stays flat whatever the table size.
+     */
+    @Transactional(readOnly = true)
+    public void exportCustomers(OutputStream outputStream) throws IOException {
+        try (Stream<Customer> customers = customerDao.streamAllCustomers();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // the servlet container owns the response stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // each document is terminated by a new line instead of jackson's default space separator
+            generator.setRootValueSeparator(null);
+
+            Iterator<Customer> iterator = customers.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                generator.writeRaw('\n');
+                if (++written % FLUSH_EVERY_ROWS == 1) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+    }
+}
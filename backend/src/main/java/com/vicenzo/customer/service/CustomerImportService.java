@@ -0,0 +1,81 @@
+package com.vicenzo.customer.service;
+
+import com.vicenzo.customer.config.CustomerImportProperties;
+import com.vicenzo.customer.dto.CustomerImportResult;
+import com.vicenzo.customer.repository.CustomerCopyRepository;
+import com.vicenzo.customer.repository.CustomersBulkLoadedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class CustomerImportService {
+
+    private final CustomerCopyRepository customerCopyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CustomerImportProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Spools the uploaded csv to a temporary file so it can be memory mapped, then imports it.
+     */
+    public CustomerImportResult importCsv(InputStream body) throws IOException {
+        Path file = Files.createTempFile("customer-import-", ".csv");
+        try {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            return importCsv(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Imports a {@code name,email,age} csv file in one transaction: rows are parsed in parallel, COPY-ed into an
+     * unlogged staging table one segment at a time and merged into {@code customer} with a single statement.
+     */
+    public CustomerImportResult importCsv(Path file) {
+        CustomerCsvParser.Options options = new CustomerCsvParser.Options(
+                Math.min(properties.segmentSize().toBytes(), Integer.MAX_VALUE),
+                (int) Math.min(properties.splitSize().toBytes(), Integer.MAX_VALUE),
+                properties.maxReportedErrors());
+
+        CustomerImportResult result = transactionTemplate.execute(status -> {
+            String stagingTable = customerCopyRepository.createStagingTable();
+            long[] counts = new long[2]; // valid, invalid
+            List<CustomerImportResult.RowError> errors = new ArrayList<>();
+            try {
+                CustomerCsvParser.parse(file, options, ForkJoinPool.commonPool(), segment -> {
+                    customerCopyRepository.copyIntoStaging(stagingTable, segment.copyRows());
+                    counts[0] += segment.validRows();
+                    counts[1] += segment.invalidRows();
+                    segment.errors().stream()
+                            .limit(options.maxReportedErrors() - errors.size())
+                            .map(e -> new CustomerImportResult.RowError(e.line(), e.message()))
+                            .forEach(errors::add);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            long imported = customerCopyRepository.mergeStagingIntoCustomer(stagingTable);
+            customerCopyRepository.dropStagingTable(stagingTable);
+
+            return new CustomerImportResult(
+                    counts[0] + counts[1], imported, counts[0] - imported, counts[1], errors);
+        });
+        eventPublisher.publishEvent(new CustomersBulkLoadedEvent(result.imported()));
+        return result;
+    }
+}
@@ -0,0 +1,237 @@
+package com.vicenzo.customer.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vicenzo.customer.config.CustomerAsyncRegistrationProperties;
+import com.vicenzo.customer.dto.CustomerRegistrationJob;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.exception.RequestValidationException;
+import com.vicenzo.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registers customers asynchronously, for registration spikes one insert and one commit per customer cannot keep up
+ * with.
+ * <p>
+ * {@link #submit} validates the request, queues it and returns right away, a full queue rejects it with a
+ * {@link ServiceUnavailableException}. The queue is a lock-free linked queue bounded by an atomic counter, so
+ * requests threads never wait on each other. A single writer thread drains it in batches: a batch is written as soon
+ * as it holds {@code maxBatchSize} registrations or its oldest one waited {@code maxBatchDelay}, as one multi-row
+ * insert in one transaction, see {@link CustomerDao#insertCustomers}. A registration whose email is taken, or that
+ * repeats the email of an earlier one in the batch, ends up {@code DUPLICATE}; a batch that fails ends up
+ * {@code FAILED} as a whole and is not retried.
+ * <p>
+ * Job outcomes are kept for {@code jobRetention}, at most {@code maxJobs} of them. Queued jobs are kept apart until
+ * they complete, they are bounded by the queue and must stay pollable however many outcomes there are. On shutdown new registrations are rejected and the writer drains
+ * what is already queued before the data source closes.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "customer.async-registration", name = "enabled", havingValue = "true")
+public class CustomerRegistrationQueue implements SmartLifecycle, MeterBinder {
+
+    private final CustomerDao customerDao;
+    private final TransactionTemplate transactionTemplate;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final Duration retryAfter;
+    private final Queue<Registration> queue = new ConcurrentLinkedQueue<>();
+    // registrations accepted and not taken into a batch yet, bounds the queue
+    private final AtomicInteger depth = new AtomicInteger();
+    // jobs not written yet, moved to the outcomes once completed
+    private final ConcurrentMap<String, CustomerRegistrationJob> queuedJobs = new ConcurrentHashMap<>();
+    private final Cache<String, CustomerRegistrationJob> jobs;
+    private final LongAdder rejected = new LongAdder();
+    private volatile DistributionSummary batchSizes;
+    private volatile boolean accepting;
+    private volatile Thread writer;
+
+    @Autowired
+    public CustomerRegistrationQueue(@Qualifier("jdbc") CustomerDao customerDao,
+                                     TransactionTemplate transactionTemplate,
+                                     CustomerAsyncRegistrationProperties properties) {
+        this.customerDao = customerDao;
+        this.transactionTemplate = transactionTemplate;
+        this.queueCapacity = properties.queueCapacity();
+        this.maxBatchSize = properties.maxBatchSize();
+        this.maxBatchDelayNanos = properties.maxBatchDelay().toNanos();
+        this.retryAfter = properties.retryAfter();
+        this.jobs = Caffeine.newBuilder()
+                .maximumSize(properties.maxJobs())
+                .expireAfterWrite(properties.jobRetention())
+                .build();
+    }
+
+    /**
+     * Publishes the queue depth, the size of every written batch and the registrations rejected by a full queue.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.registration.queue.depth", depth, AtomicInteger::get)
+                .description("registrations waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("customer.registration.queue.rejected", rejected, LongAdder::sum)
+                .description("registrations rejected because the queue was full")
+                .register(registry);
+        batchSizes = DistributionSummary.builder("customer.registration.batch.size")
+                .description("registrations written per batch")
+                .baseUnit("registrations")
+                .serviceLevelObjectives(1, 10, 100, 1_000)
+                .register(registry);
+    }
+
+    /**
+     * Queues a registration, its outcome can be polled with {@link #getJob} under the returned job's id.
+     */
+    public CustomerRegistrationJob submit(CustomerRegistrationRequest request) {
+        CustomerRegistrationValidator.validate(request)
+                .ifPresent(error -> {
+                    throw new RequestValidationException(error);
+                });
+        // the slot is taken before accepting is read, so the writer cannot stop while it is being filled
+        if (depth.incrementAndGet() > queueCapacity || !accepting) {
+            depth.decrementAndGet();
+            rejected.increment();
+            throw new ServiceUnavailableException("too many pending registrations, retry later", retryAfter);
+        }
+        CustomerRegistrationJob job = CustomerRegistrationJob.queued(UUID.randomUUID().toString(), request.email());
+        queuedJobs.put(job.id(), job);
+        queue.offer(new Registration(job, request, System.nanoTime()));
+        LockSupport.unpark(writer);
+        return job;
+    }
+
+    /**
+     * @return empty for an unknown job and once its outcome is no longer retained
+     */
+    public Optional<CustomerRegistrationJob> getJob(String id) {
+        // queued first: a job completing in between is in the outcomes before it leaves the queued ones
+        CustomerRegistrationJob queued = queuedJobs.get(id);
+        return Optional.ofNullable(queued != null ? queued : jobs.getIfPresent(id));
+    }
+
+    @Override
+    public void start() {
+        accepting = true;
+        writer = new Thread(this::drain, "customer-registration-writer");
+        writer.start();
+    }
+
+    /**
+     * Rejects new registrations and waits for the queued ones to be written.
+     */
+    @Override
+    public void stop() {
+        accepting = false;
+        Thread current = writer;
+        LockSupport.unpark(current);
+        try {
+            current.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return accepting;
+    }
+
+    /**
+     * Below the web server's start/stop phase, {@code DEFAULT_PHASE - 2048}: the writer starts before the server
+     * takes requests and stops once it no longer does, so no registration comes in after the queue drained.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<Registration> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            Registration first = queue.poll();
+            if (first == null) {
+                if (!accepting && depth.get() == 0) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            batch.add(first);
+            long deadline = first.acceptedAt() + maxBatchDelayNanos;
+            while (batch.size() < maxBatchSize) {
+                Registration next = queue.poll();
+                if (next != null) {
+                    batch.add(next);
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !accepting) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            depth.addAndGet(-batch.size());
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Registration> batch) {
+        List<Customer> customers = batch.stream()
+                .map(Registration::request)
+                .map(request -> new Customer(request.name(), request.email(), request.age()))
+                .toList();
+        int[] inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> customerDao.insertCustomers(customers));
+        } catch (Throwable e) {
+            // the writer must outlive any batch, without it every later registration would stay queued
+            log.error("could not write a batch of {} registrations", batch.size(), e);
+            batch.forEach(registration -> complete(registration.job().failed("registration could not be written")));
+            return;
+        }
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            CustomerRegistrationJob job = batch.get(i).job();
+            complete(inserted != null && inserted[i] == 1 ? job.created(customers.get(i).getId()) : job.duplicate());
+        }
+    }
+
+    private void complete(CustomerRegistrationJob job) {
+        jobs.put(job.id(), job);
+        queuedJobs.remove(job.id());
+    }
+
+    private record Registration(CustomerRegistrationJob job, CustomerRegistrationRequest request, long acceptedAt) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.vicenzo.customer.service;
+
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Optional;
+
+/**
+ * Field rules shared by every registration path (single, bulk and import).
+ */
+final class CustomerRegistrationValidator {
+
+    private CustomerRegistrationValidator() {
+    }
+
+    static Optional<String> validate(String name, String email, Integer age) {
+        if (StringUtils.isBlank(name)) {
+            return Optional.of("name is required");
+        }
+        if (StringUtils.isBlank(email)) {
+            return Optional.of("email is required");
+        }
+        if (age == null) {
+            return Optional.of("age is required");
+        }
+        return Optional.empty();
+    }
+
+    static Optional<String> validate(CustomerRegistrationRequest request) {
+        return validate(request.name(), request.email(), request.age());
+    }
+}
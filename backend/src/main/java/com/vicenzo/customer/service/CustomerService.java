@@ -1,9 +1,17 @@
 package com.vicenzo.customer.service;
 
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
+import com.vicenzo.customer.dto.CustomerPage;
 import com.vicenzo.customer.model.Customer;
 import com.vicenzo.customer.dto.CustomerRegistrationRequest;
 import com.vicenzo.customer.dto.CustomerUpdateRequest;
 import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.customer.repository.CustomerUpdateResult;
+import com.vicenzo.customer.repository.CustomerVersionRepository;
+import com.vicenzo.customer.repository.CustomerVersionRepository.CustomerTableVersion;
+import com.vicenzo.customer.repository.VersionedCustomer;
+import com.vicenzo.exception.ConcurrentUpdateException;
+import com.vicenzo.exception.PreconditionFailedException;
 import com.vicenzo.exception.RequestValidationException;
 import com.vicenzo.exception.DuplicateResourceException;
 import com.vicenzo.exception.ResourceNotFoundException;
@@ -11,72 +19,259 @@ import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class CustomerService {
 
+    static final int MAX_PAGE_SIZE = 1000;
+
     @Qualifier("jdbc")
     private final CustomerDao customerDao;
+    private final CustomerVersionRepository customerVersionRepository;
 
+    @Transactional(readOnly = true)
     public List<Customer> getAllCustomers() {
         return customerDao.selectAllCustomers();
     }
 
+    // the conditional list reads below read the etag before the body, in the same read-only transaction so that with
+    // read replicas both come from the same replica; etags change with every committed write, so a write in between
+    // can only make a tag older than its body, which costs the client one more full response but never hides a change
+    // behind a not modified
+
+    /**
+     * All customers, unless {@code notModified} accepts their ETag.
+     *
+     * @param notModified told the current ETag, true when the client already holds it
+     * @return null when not modified
+     */
+    @Transactional(readOnly = true)
+    public List<Customer> getAllCustomers(Predicate<String> notModified) {
+        return notModified.test(getCustomersETag()) ? null : getAllCustomers();
+    }
+
+    @Transactional(readOnly = true)
+    public CustomerPage getCustomersPage(String cursor, int limit) {
+        validateLimit(limit);
+        long afterId = cursor == null ? 0L : decodeCursor(cursor);
+
+        // fetch one extra row to know whether another page exists without a second query
+        List<Customer> customers = customerDao.selectCustomersAfterId(afterId, limit + 1);
+        if (customers.size() <= limit) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, limit);
+        return new CustomerPage(page, encodeCursor(page.get(limit - 1).getId()));
+    }
+
+    /**
+     * One page of customers, unless {@code notModified} accepts its ETag.
+     *
+     * @param notModified told the current ETag, true when the client already holds it
+     * @return null when not modified
+     */
+    @Transactional(readOnly = true)
+    public CustomerPage getCustomersPage(String cursor, int limit, Predicate<String> notModified) {
+        return notModified.test(getCustomersPageETag(cursor, limit)) ? null : getCustomersPage(cursor, limit);
+    }
+
+    /**
+     * ETag of the whole customer list, derived from the sum of the versions and the number of customers.
+     */
+    @Transactional(readOnly = true)
+    public String getCustomersETag() {
+        CustomerTableVersion tableVersion = customerVersionRepository.findTableVersion();
+        return "%s-%s".formatted(tableVersion.versionSum(), tableVersion.rowCount());
+    }
+
+    /**
+     * ETag of one page, derived from the customers it holds and the one after it, which decides the next cursor.
+     * Costs as much as the page itself, unlike {@link #getCustomersETag()}.
+     */
+    @Transactional(readOnly = true)
+    public String getCustomersPageETag(String cursor, int limit) {
+        validateLimit(limit);
+        long afterId = cursor == null ? 0L : decodeCursor(cursor);
+        return customerVersionRepository.findPageVersion(afterId, limit + 1).orElse("empty");
+    }
+
+    @Transactional(readOnly = true)
     public Customer getCustomer(Long customerId) {
         return customerDao.selectCustomerById(customerId)
                 .orElseThrow(() -> new ResourceNotFoundException("customer with id [%s] not found".formatted(customerId)));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        // check if email exist
-        String email = customerRegistrationRequest.email();
-        if (customerDao.existsCustomerWithEmail(email)) {
-            throw new DuplicateResourceException("email already taken");
+    /**
+     * The customer, unless {@code notModified} accepts its ETag. Unlike the lists, the ETag is the version of the row
+     * the customer was read from, a lookup joining another caller's query can return an older row than the table
+     * holds by now.
+     *
+     * @param notModified told the current ETag, true when the client already holds it
+     * @return null when not modified
+     */
+    @Transactional(readOnly = true)
+    public Customer getCustomer(Long customerId, Predicate<String> notModified) {
+        VersionedCustomer customer = customerDao.selectVersionedCustomerById(customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("customer with id [%s] not found".formatted(customerId)));
+        return notModified.test(String.valueOf(customer.version())) ? null : customer.customer();
+    }
+
+    /**
+     * Looks all {@code ids} up in a single query, at most {@value #MAX_PAGE_SIZE} of them.
+     */
+    @Transactional(readOnly = true)
+    public CustomerMultiGetResult getCustomers(List<Long> ids) {
+        List<Long> requestedIds = requestedIds(ids);
+        if (requestedIds.isEmpty()) {
+            return new CustomerMultiGetResult(List.of(), List.of());
         }
-        // add
+        return inRequestOrder(requestedIds, customerDao.selectCustomersByIds(requestedIds));
+    }
+
+    /**
+     * @return id of the new customer
+     */
+    public Long addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        CustomerRegistrationValidator.validate(customerRegistrationRequest)
+                .ifPresent(error -> {
+                    throw new RequestValidationException(error);
+                });
+        // the insert itself checks the email, no separate lookup that a concurrent registration could race past
         Customer customer = new Customer(customerRegistrationRequest.name()
                 , customerRegistrationRequest.email(), customerRegistrationRequest.age());
-        customerDao.insertCustomer(customer);
+        return customerDao.insertCustomer(customer)
+                .orElseThrow(() -> new DuplicateResourceException("email already taken"));
     }
 
     public void deleteCustomerById(Long customerId) {
-        // check if customer exist
-        if (!customerDao.existsCustomerWithId(customerId)) {
+        // the affected row count tells a missing customer apart, no separate existence check
+        if (customerDao.deleteCustomerCustomerById(customerId) == 0) {
             throw new ResourceNotFoundException("customer with id [%s] not found".formatted(customerId));
         }
-        customerDao.deleteCustomerCustomerById(customerId);
     }
 
-    public void updateCustomer(Long customerId, CustomerUpdateRequest updateRequest) {
-        // TODO: for jpa use getReferenceById(customerId) as it does
-        Customer customer = getCustomer(customerId);
-        boolean changes = false;
-        if (StringUtils.isNotBlank(updateRequest.name()) && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
-            changes = true;
+    /**
+     * Applies the non blank fields of {@code updateRequest} in a single statement, the unique email constraint
+     * rejects a taken email. With an {@code If-Match} header the customer must still have that version, and a
+     * customer another request is updating right now is rejected rather than waited for.
+     *
+     * @param ifMatch {@code If-Match} header, null when the client sent none
+     * @return the updated customer and its new version
+     */
+    public CustomerUpdateResult updateCustomer(Long customerId, String ifMatch, CustomerUpdateRequest updateRequest) {
+        Long expectedVersion = expectedVersion(ifMatch);
+        CustomerUpdateResult result;
+        try {
+            result = customerDao.updateCustomerFields(customerId, expectedVersion,
+                    StringUtils.isNotBlank(updateRequest.name()) ? updateRequest.name() : null,
+                    StringUtils.isNotBlank(updateRequest.email()) ? updateRequest.email() : null,
+                    updateRequest.age());
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateResourceException("email already taken");
+        } catch (PessimisticLockingFailureException e) {
+            throw concurrentUpdate(customerId);
+        }
+        return switch (result.outcome()) {
+            case UPDATED -> result;
+            case NO_CHANGES -> throw new RequestValidationException("no data changes found");
+            case NOT_FOUND -> throw ifMatch != null
+                    ? new PreconditionFailedException("customer with id [%s] not found".formatted(customerId))
+                    : new ResourceNotFoundException("customer with id [%s] not found".formatted(customerId));
+            case VERSION_MISMATCH -> throw versionMismatch(customerId);
+        };
+    }
+
+    /**
+     * Version an {@code If-Match} header asks for, null when any version will do: no header or {@code *}. Only a
+     * single strong entity tag can match, weak tags never do.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.strip();
+        if (etag.startsWith("W/")) {
+            throw new PreconditionFailedException("If-Match needs a strong entity tag");
         }
+        try {
+            return Long.valueOf(StringUtils.unwrap(etag, '"'));
+        } catch (NumberFormatException e) {
+            throw new RequestValidationException("If-Match must be a single entity tag");
+        }
+    }
 
-        if (StringUtils.isNotBlank(updateRequest.email()) && !updateRequest.email().equals(customer.getEmail())) {
-            if (customerDao.existsCustomerWithEmail(updateRequest.email())) {
-                throw new DuplicateResourceException("email already taken");
+    static PreconditionFailedException versionMismatch(Long customerId) {
+        return new PreconditionFailedException(
+                "customer with id [%s] was changed since it was read".formatted(customerId));
+    }
+
+    static ConcurrentUpdateException concurrentUpdate(Long customerId) {
+        return new ConcurrentUpdateException(
+                "customer with id [%s] is being updated by another request, retry".formatted(customerId));
+    }
+
+    /**
+     * The distinct {@code ids} in request order, blank ones ({@code ?ids=1,,2}) dropped.
+     */
+    static List<Long> requestedIds(List<Long> ids) {
+        List<Long> requestedIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (requestedIds.size() > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("at most %s ids can be requested at once".formatted(MAX_PAGE_SIZE));
+        }
+        return requestedIds;
+    }
+
+    static CustomerMultiGetResult inRequestOrder(List<Long> requestedIds, List<Customer> found) {
+        Map<Long, Customer> customersById = found.stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity(), (first, second) -> first));
+        List<Customer> customers = new ArrayList<>(customersById.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requestedIds) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            } else {
+                missingIds.add(id);
             }
-            customer.setEmail(updateRequest.email());
-            changes = true;
         }
+        return new CustomerMultiGetResult(customers, missingIds);
+    }
 
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
-            changes = true;
+    private static void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
         }
+    }
+
+    static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastId.toString().getBytes(StandardCharsets.UTF_8));
+    }
 
-        if (!changes) {
-            throw new RequestValidationException("no data changes found");
+    static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("invalid cursor");
         }
-        customerDao.updateCustomer(customer);
     }
 }
-
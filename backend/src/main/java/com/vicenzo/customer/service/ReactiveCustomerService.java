@@ -0,0 +1,116 @@
+package com.vicenzo.customer.service;
+
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
+import com.vicenzo.customer.dto.CustomerPage;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.dto.CustomerUpdateRequest;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerUpdateResult;
+import com.vicenzo.customer.repository.ReactiveCustomerRepository;
+import com.vicenzo.exception.DuplicateResourceException;
+import com.vicenzo.exception.PreconditionFailedException;
+import com.vicenzo.exception.RequestValidationException;
+import com.vicenzo.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.vicenzo.customer.service.CustomerService.MAX_PAGE_SIZE;
+
+/**
+ * {@link CustomerService} for the reactive api, same rules and errors but nothing blocks.
+ */
+@Profile("reactive")
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerRepository customerRepository;
+
+    public Flux<Customer> getAllCustomers() {
+        return customerRepository.findAll();
+    }
+
+    public Mono<CustomerPage> getCustomersPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new RequestValidationException("limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)));
+        }
+        return Mono.fromCallable(() -> cursor == null ? 0L : CustomerService.decodeCursor(cursor))
+                // fetch one extra row to know whether another page exists without a second query
+                .flatMap(afterId -> customerRepository.findAfterId(afterId, limit + 1).collectList())
+                .map(customers -> {
+                    if (customers.size() <= limit) {
+                        return new CustomerPage(customers, null);
+                    }
+                    var page = customers.subList(0, limit);
+                    return new CustomerPage(page, CustomerService.encodeCursor(page.get(limit - 1).getId()));
+                });
+    }
+
+    public Mono<Customer> getCustomer(Long customerId) {
+        return customerRepository.findById(customerId)
+                .switchIfEmpty(Mono.error(() -> notFound(customerId)));
+    }
+
+    public Mono<CustomerMultiGetResult> getCustomers(List<Long> ids) {
+        return Mono.fromCallable(() -> CustomerService.requestedIds(ids))
+                .flatMap(requestedIds -> requestedIds.isEmpty()
+                        ? Mono.just(new CustomerMultiGetResult(List.of(), List.of()))
+                        : customerRepository.findByIds(requestedIds).collectList()
+                                .map(customers -> CustomerService.inRequestOrder(requestedIds, customers)));
+    }
+
+    /**
+     * @return id of the new customer
+     */
+    public Mono<Long> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        var error = CustomerRegistrationValidator.validate(customerRegistrationRequest);
+        if (error.isPresent()) {
+            return Mono.error(new RequestValidationException(error.get()));
+        }
+        Customer customer = new Customer(customerRegistrationRequest.name()
+                , customerRegistrationRequest.email(), customerRegistrationRequest.age());
+        return customerRepository.insert(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("email already taken")));
+    }
+
+    public Mono<Void> deleteCustomerById(Long customerId) {
+        return customerRepository.deleteById(customerId)
+                .flatMap(deleted -> deleted == 0 ? Mono.error(notFound(customerId)) : Mono.empty());
+    }
+
+    /**
+     * @param ifMatch {@code If-Match} header, null when the client sent none
+     * @return the updated customer and its new version
+     */
+    public Mono<CustomerUpdateResult> updateCustomer(Long customerId, String ifMatch, CustomerUpdateRequest updateRequest) {
+        return Mono.fromCallable(() -> Optional.ofNullable(CustomerService.expectedVersion(ifMatch)))
+                .flatMap(expectedVersion -> customerRepository.updateFields(customerId, expectedVersion.orElse(null),
+                        StringUtils.isNotBlank(updateRequest.name()) ? updateRequest.name() : null,
+                        StringUtils.isNotBlank(updateRequest.email()) ? updateRequest.email() : null,
+                        updateRequest.age()))
+                .onErrorMap(DuplicateKeyException.class, e -> new DuplicateResourceException("email already taken"))
+                .onErrorMap(PessimisticLockingFailureException.class, e -> CustomerService.concurrentUpdate(customerId))
+                .flatMap(result -> switch (result.outcome()) {
+                    case UPDATED -> Mono.just(result);
+                    case NO_CHANGES -> Mono.error(new RequestValidationException("no data changes found"));
+                    case NOT_FOUND -> Mono.error(ifMatch != null
+                            ? new PreconditionFailedException("customer with id [%s] not found".formatted(customerId))
+                            : notFound(customerId));
+                    case VERSION_MISMATCH -> Mono.error(CustomerService.versionMismatch(customerId));
+                });
+    }
+
+    private static ResourceNotFoundException notFound(Long customerId) {
+        return new ResourceNotFoundException("customer with id [%s] not found".formatted(customerId));
+    }
+}
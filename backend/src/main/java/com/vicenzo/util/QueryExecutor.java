@@ -3,14 +3,10 @@ package com.vicenzo.util;
 import jakarta.persistence.Table;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,47 +18,29 @@ public class QueryExecutor {
 
     public <T> List<T> executeQuery(String sql, Class<T> targetType, String[] columnNames, RowMapper<T> rowMapper) {
         return jdbcTemplate.query(sql, rs -> {
+            // columns and setters are resolved once per query, not per row
+            RowMapperFactory.Populator<T> populator = RowMapperFactory.populator(targetType, rs, columnNames);
             List<T> results = new ArrayList<>();
+            int rowNum = 0;
             while (rs.next()) {
-                T instance = rowMapper.mapRow(rs, 0);  // Maps the current row to an instance
-                populateInstance(instance, rs, columnNames);
+                T instance = rowMapper.mapRow(rs, rowNum++);  // Maps the current row to an instance
+                populator.populate(instance, rs);
                 results.add(instance);
             }
             return results;
         });
     }
 
-    private <T> void populateInstance(T instance, ResultSet rs, String[] columnNames) throws SQLException {
-        for (String columnName : columnNames) {
-            if (columnName != null) {
-                Object value = rs.getObject(columnName);
-                // Map value to instance property using setters
-                try {
-                    String setterMethodName = "set" + capitalize(columnName);
-                    Method setter = instance.getClass().getMethod(setterMethodName, value.getClass());
-                    setter.invoke(instance, value);
-                } catch (Exception e) {
-                    throw new SQLException("Error mapping column " + columnName + " to property", e);
-                }
-            }
-        }
-    }
-
-    private String capitalize(String str) {
-        return str.substring(0, 1).toUpperCase() + str.substring(1);
-    }
-
     // second way
 
     /**
      If you need to perform custom column-to-property mapping, complex transformations, or work with non-standard Java classes,
      RowMapper might be more suitable.
-     On the other hand, if you have a simple mapping scenario and your class follows JavaBean conventions,
-     BeanPropertyRowMapper can simplify the mapping process.
+     On the other hand, if you have a simple mapping scenario and your class follows JavaBean conventions or is a record,
+     RowMapperFactory can simplify the mapping process, unlike BeanPropertyRowMapper it does not reflect per row.
     */
      public <T> List<T> executeQuery(String sql, Class<T> targetType) {
-        BeanPropertyRowMapper<T> rowMapper = new BeanPropertyRowMapper<>(targetType);
-        return jdbcTemplate.query(sql, rowMapper);
+        return jdbcTemplate.query(sql, RowMapperFactory.forClass(targetType));
     }
 
 
@@ -99,7 +77,7 @@ public class QueryExecutor {
                 (rs, rowNum) -> new Customer() // RowMapper
         );
 
-    3. With BeanPropertyRowMapper
+    3. With RowMapperFactory
         String sql = """
                 SELECT  name, email, age
                 FROM customer
@@ -0,0 +1,375 @@
+package com.vicenzo.util;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ClassUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Row mappers for JavaBeans and records that do no reflection per row.
+ * <p>
+ * Each class is introspected once: setters and the no-arg constructor are turned into {@link BiConsumer} and
+ * {@link Supplier} instances with {@link LambdaMetafactory} (plain {@link MethodHandle}s when that is not
+ * permitted), records get a handle on their canonical constructor. Each result set shape, its column labels, is
+ * resolved once per class into a plan of column index, typed getter and target, which is cached as well. Columns
+ * are matched to properties ignoring case and underscores, unmatched columns are ignored and SQL {@code NULL}s
+ * leave the property at its default.
+ */
+public final class RowMapperFactory {
+
+    private static final ClassValue<TypeBinding<?>> BINDINGS = new ClassValue<>() {
+        @Override
+        protected TypeBinding<?> computeValue(Class<?> type) {
+            return type.isRecord() ? new RecordBinding<>(type) : new BeanBinding<>(type);
+        }
+    };
+
+    private RowMapperFactory() {
+    }
+
+    /**
+     * A mapper creating one {@code type} per row. It can be shared between threads and reused across queries.
+     */
+    public static <T> RowMapper<T> forClass(Class<T> type) {
+        return new ShapeCachingRowMapper<>(binding(type));
+    }
+
+    /**
+     * Resolves {@code columnNames} of {@code rs} to the setters of {@code type} once, for filling instances created
+     * elsewhere row after row.
+     *
+     * @throws SQLException if a column is missing from the result set or {@code type} has no matching setter
+     */
+    public static <T> Populator<T> populator(Class<T> type, ResultSet rs, String[] columnNames) throws SQLException {
+        if (!(binding(type) instanceof BeanBinding<T> beanBinding)) {
+            throw new IllegalArgumentException("%s is immutable, map it with forClass".formatted(type.getName()));
+        }
+        List<ColumnBinding> columns = new ArrayList<>();
+        for (String columnName : columnNames) {
+            if (columnName == null) {
+                continue;
+            }
+            Property property = beanBinding.properties.get(normalize(columnName));
+            if (property == null) {
+                throw new SQLException("Error mapping column " + columnName + " to property, no setter found");
+            }
+            columns.add(new ColumnBinding(rs.findColumn(columnName), property));
+        }
+        ColumnBinding[] bindings = columns.toArray(ColumnBinding[]::new);
+        return (instance, row) -> beanBinding.populate(instance, row, bindings);
+    }
+
+    @FunctionalInterface
+    public interface Populator<T> {
+        void populate(T instance, ResultSet rs) throws SQLException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TypeBinding<T> binding(Class<T> type) {
+        return (TypeBinding<T>) BINDINGS.get(type);
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class ShapeCachingRowMapper<T> implements RowMapper<T> {
+        private final TypeBinding<T> binding;
+        // per thread, threads sharing the mapper read their own result sets and must not evict each other's plan
+        private final ThreadLocal<BoundPlan<T>> current = new ThreadLocal<>();
+
+        private ShapeCachingRowMapper(TypeBinding<T> binding) {
+            this.binding = binding;
+        }
+
+        @Override
+        public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+            BoundPlan<T> bound = current.get();
+            if (bound == null || bound.resultSet().get() != rs) {
+                bound = new BoundPlan<>(new WeakReference<>(rs), binding.plan(rs.getMetaData()));
+                current.set(bound);
+            }
+            return bound.plan().map(rs);
+        }
+    }
+
+    /**
+     * The result set weakly, the mapper must not keep a finished result set and its rows reachable; the plan
+     * strongly, it lives as long as the result set is being read.
+     */
+    private record BoundPlan<T>(WeakReference<ResultSet> resultSet, Plan<T> plan) {
+    }
+
+    @FunctionalInterface
+    private interface Plan<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    /**
+     * A bean property or record component; {@code setter} is only set for beans, {@code position} only for records.
+     */
+    private record Property(String name, Class<?> type, ColumnReader reader,
+                            BiConsumer<Object, Object> setter, int position) {
+    }
+
+    private record ColumnBinding(int index, Property property) {
+    }
+
+    private abstract static class TypeBinding<T> {
+        final Class<T> type;
+        final Map<String, Property> properties = new HashMap<>();
+        private final Map<List<String>, Plan<T>> plans = new ConcurrentHashMap<>();
+
+        TypeBinding(Class<T> type) {
+            this.type = type;
+        }
+
+        Plan<T> plan(ResultSetMetaData metaData) throws SQLException {
+            int columnCount = metaData.getColumnCount();
+            String[] labels = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                labels[i] = normalize(JdbcUtils.lookupColumnName(metaData, i + 1));
+            }
+            return plans.computeIfAbsent(Arrays.asList(labels), this::compile);
+        }
+
+        private Plan<T> compile(List<String> labels) {
+            List<ColumnBinding> columns = new ArrayList<>();
+            for (int i = 0; i < labels.size(); i++) {
+                Property property = properties.get(labels.get(i));
+                if (property != null) {
+                    columns.add(new ColumnBinding(i + 1, property));
+                }
+            }
+            return compile(columns.toArray(ColumnBinding[]::new));
+        }
+
+        abstract Plan<T> compile(ColumnBinding[] columns);
+
+        static SQLException mappingError(Class<?> type, Throwable cause) {
+            return new SQLException("Error mapping row to " + type.getName(), cause);
+        }
+    }
+
+    private static final class BeanBinding<T> extends TypeBinding<T> {
+        private final Supplier<Object> constructor;
+
+        BeanBinding(Class<T> type) {
+            super(type);
+            MethodHandles.Lookup lookup = lookupFor(type);
+            this.constructor = noArgConstructor(lookup, type);
+            for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+                Method writeMethod = descriptor.getWriteMethod();
+                if (writeMethod != null) {
+                    Class<?> propertyType = writeMethod.getParameterTypes()[0];
+                    properties.put(normalize(descriptor.getName()), new Property(descriptor.getName(), propertyType,
+                            readerFor(propertyType), setter(lookup, type, writeMethod), -1));
+                }
+            }
+        }
+
+        @Override
+        Plan<T> compile(ColumnBinding[] columns) {
+            if (constructor == null) {
+                throw new IllegalStateException("%s has no accessible no-arg constructor".formatted(type.getName()));
+            }
+            return rs -> {
+                T instance = type.cast(constructor.get());
+                populate(instance, rs, columns);
+                return instance;
+            };
+        }
+
+        void populate(T instance, ResultSet rs, ColumnBinding[] columns) throws SQLException {
+            for (ColumnBinding column : columns) {
+                Object value = column.property().reader().read(rs, column.index());
+                if (value != null) {
+                    try {
+                        column.property().setter().accept(instance, value);
+                    } catch (RuntimeException e) {
+                        throw new SQLException("Error mapping column " + column.index()
+                                + " to property " + column.property().name(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class RecordBinding<T> extends TypeBinding<T> {
+        private final MethodHandle canonicalConstructor;
+        private final Object[] defaults;
+
+        RecordBinding(Class<T> type) {
+            super(type);
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            this.defaults = new Object[components.length];
+            for (int i = 0; i < components.length; i++) {
+                Class<?> componentType = components[i].getType();
+                parameterTypes[i] = componentType;
+                defaults[i] = componentType.isPrimitive() ? Array.get(Array.newInstance(componentType, 1), 0) : null;
+                properties.put(normalize(components[i].getName()), new Property(components[i].getName(),
+                        componentType, readerFor(componentType), null, i));
+            }
+            try {
+                this.canonicalConstructor = lookupFor(type)
+                        .findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("cannot access the constructor of " + type.getName(), e);
+            }
+        }
+
+        @Override
+        Plan<T> compile(ColumnBinding[] columns) {
+            return rs -> {
+                Object[] arguments = defaults.clone();
+                for (ColumnBinding column : columns) {
+                    Object value = column.property().reader().read(rs, column.index());
+                    if (value != null) {
+                        arguments[column.property().position()] = value;
+                    }
+                }
+                try {
+                    return type.cast((Object) canonicalConstructor.invokeExact(arguments));
+                } catch (Throwable e) {
+                    throw mappingError(type, e);
+                }
+            };
+        }
+    }
+
+    private static MethodHandles.Lookup lookupFor(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            return MethodHandles.publicLookup();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> noArgConstructor(MethodHandles.Lookup lookup, Class<?> type) {
+        MethodHandle constructor;
+        try {
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+        try {
+            return (Supplier<Object>) LambdaMetafactory.metafactory(lookup, "get",
+                            MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                            constructor, MethodType.methodType(type))
+                    .getTarget().invokeExact();
+        } catch (Throwable e) {
+            MethodHandle generic = constructor.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (Object) generic.invokeExact();
+                } catch (Throwable t) {
+                    throw new IllegalStateException("cannot instantiate " + type.getName(), t);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Class<?> type, Method method) {
+        MethodHandle setter;
+        try {
+            setter = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot access " + method, e);
+        }
+        Class<?> valueType = ClassUtils.resolvePrimitiveIfNecessary(method.getParameterTypes()[0]);
+        try {
+            return (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+                            MethodType.methodType(BiConsumer.class),
+                            MethodType.methodType(void.class, Object.class, Object.class),
+                            setter, MethodType.methodType(void.class, type, valueType))
+                    .getTarget().invokeExact();
+        } catch (Throwable e) {
+            MethodHandle generic = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (instance, value) -> {
+                try {
+                    generic.invokeExact(instance, value);
+                } catch (Throwable t) {
+                    throw new IllegalStateException("cannot invoke " + method, t);
+                }
+            };
+        }
+    }
+
+    /**
+     * Typed getter for a property, primitive getters are only checked for {@code NULL} after the read.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader readerFor(Class<?> propertyType) {
+        Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(propertyType);
+        if (type == String.class) {
+            return ResultSet::getString;
+        }
+        if (type == Long.class) {
+            return (rs, index) -> {
+                long value = rs.getLong(index);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == Integer.class) {
+            return (rs, index) -> {
+                int value = rs.getInt(index);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == Double.class) {
+            return (rs, index) -> {
+                double value = rs.getDouble(index);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == Boolean.class) {
+            return (rs, index) -> {
+                boolean value = rs.getBoolean(index);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        }
+        if (type.isEnum()) {
+            return (rs, index) -> {
+                String value = rs.getString(index);
+                return value == null ? null : Enum.valueOf((Class<? extends Enum>) type, value);
+            };
+        }
+        return (rs, index) -> rs.getObject(index, type);
+    }
+}
@@ -0,0 +1,27 @@
+-- one sequence for all rows: every insert and update gives its row a version no row had before, so sum(version)
+-- and count(*) together change with inserts, updates and deletes and make the etag of the whole table; unlike
+-- max(version) they also change when writes commit in another order than they drew their versions
+CREATE SEQUENCE customer_version_seq;
+
+-- a volatile default fills existing rows with distinct versions
+ALTER TABLE customer
+    ADD COLUMN version BIGINT NOT NULL DEFAULT nextval('customer_version_seq');
+
+CREATE INDEX customer_version_idx ON customer (version);
+
+-- bumped in the database so every write path (jdbc, jpa, r2dbc, copy imports) is covered
+CREATE FUNCTION customer_bump_version() RETURNS TRIGGER AS
+$$
+BEGIN
+    NEW.version := nextval('customer_version_seq');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- updates that change nothing keep their version
+CREATE TRIGGER customer_bump_version
+    BEFORE UPDATE
+    ON customer
+    FOR EACH ROW
+    WHEN (OLD IS DISTINCT FROM NEW)
+EXECUTE FUNCTION customer_bump_version();
@@ -0,0 +1,76 @@
+package com.vicenzo.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionLimitingDataSourceTest {
+
+    @Mock
+    private DataSource dataSource;
+    private ConnectionLimitingDataSource underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ConnectionLimitingDataSource(dataSource, 1, Duration.ofMillis(50));
+    }
+
+    @Test
+    void closingTheConnectionReleasesThePermit() throws SQLException {
+        // Given
+        Connection connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        // When
+        Connection actual = underTest.getConnection();
+        int whileOpen = underTest.availablePermits();
+        actual.close();
+        actual.close();
+
+        // Then
+        assertThat(whileOpen).isZero();
+        assertThat(underTest.availablePermits()).isEqualTo(1);
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void willThrowWhenNoPermitFreesUpInTime() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+        underTest.getConnection();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getConnection())
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("no database connection available");
+    }
+
+    @Test
+    void failedConnectionReleasesThePermit() throws SQLException {
+        // Given
+        when(dataSource.getConnection()).thenThrow(new SQLException("database down"));
+
+        // When
+        assertThatThrownBy(() -> underTest.getConnection()).hasMessage("database down");
+
+        // Then
+        assertThat(underTest.availablePermits()).isEqualTo(1);
+    }
+}
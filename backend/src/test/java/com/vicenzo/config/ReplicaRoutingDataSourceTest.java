@@ -0,0 +1,186 @@
+package com.vicenzo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(2);
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource firstReplica;
+    @Mock
+    private DataSource secondReplica;
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.unbindClientWrites();
+    }
+
+    @Test
+    void readOnlyTransactionsTakeTurnsOnTheReplicas() throws SQLException {
+        // Given
+        ReplicaRoutingDataSource underTest = underTest(ReadReplicaProperties.Selection.ROUND_ROBIN);
+        replicaWithLag(firstReplica, 0);
+        replicaWithLag(secondReplica, 0);
+        underTest.checkReplicas();
+
+        // When
+        Object write = underTest.determineCurrentLookupKey();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Then
+        assertThat(write).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo("replica-1");
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo("replica-2");
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo("replica-1");
+    }
+
+    @Test
+    void unreachableAndLaggingReplicasTakeNoReads() throws SQLException {
+        // Given
+        ReplicaRoutingDataSource underTest = underTest(ReadReplicaProperties.Selection.ROUND_ROBIN);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Object beforeFirstCheck = underTest.determineCurrentLookupKey();
+        when(firstReplica.getConnection()).thenThrow(new SQLException("connection refused"));
+        replicaWithLag(secondReplica, MAX_LAG.toSeconds() + 1);
+
+        // When
+        underTest.checkReplicas();
+
+        // Then
+        assertThat(beforeFirstCheck).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void leastLatencyPrefersTheFastestReplica() throws SQLException {
+        // Given
+        ReplicaRoutingDataSource underTest = underTest(ReadReplicaProperties.Selection.LEAST_LATENCY);
+        ResultSet slow = replicaWithLag(firstReplica, 0);
+        when(slow.next()).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return true;
+        });
+        replicaWithLag(secondReplica, 0);
+        underTest.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        // Then
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo("replica-2");
+        assertThat(underTest.determineCurrentLookupKey()).isEqualTo("replica-2");
+    }
+
+    @Test
+    void readsOfAClientStayOnThePrimaryUntilTheReplicasReplayedItsWrite() throws SQLException {
+        // Given
+        ReplicaRoutingDataSource underTest = underTest(ReadReplicaProperties.Selection.ROUND_ROBIN);
+        replica(firstReplica, 0, 99);
+        replica(secondReplica, 0, 99);
+        underTest.checkReplicas();
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet walPosition = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("SELECT pg_current_wal_insert_lsn() - '0/0'")).thenReturn(walPosition);
+        when(walPosition.getLong(1)).thenReturn(100L);
+        when(primary.getConnection()).thenReturn(connection);
+        List<Long> writes = new ArrayList<>();
+        ReplicaRoutingDataSource.ClientWrites writer = new ReplicaRoutingDataSource.ClientWrites(0, writes::add);
+
+        // When
+        ReplicaRoutingDataSource.bindClientWrites(writer);
+        try (Connection write = underTest.getConnection()) {
+            write.createStatement().executeUpdate("UPDATE customer SET age = 30 WHERE id = 1");
+        }
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Object writerRead = underTest.determineCurrentLookupKey();
+        ReplicaRoutingDataSource.bindClientWrites(new ReplicaRoutingDataSource.ClientWrites(0, lsn -> {
+        }));
+        Object otherClientRead = underTest.determineCurrentLookupKey();
+        ReplicaRoutingDataSource.bindClientWrites(new ReplicaRoutingDataSource.ClientWrites(100, lsn -> {
+        }));
+        replica(firstReplica, 0, 100);
+        underTest.checkReplicas();
+        Object writerReadAfterReplay = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(writes).containsExactly(100L);
+        assertThat(writer.lastWriteLsn()).isEqualTo(100L);
+        assertThat(writerRead).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(otherClientRead).isEqualTo("replica-1");
+        assertThat(writerReadAfterReplay).isEqualTo("replica-1");
+    }
+
+    @Test
+    void writesOutsideAClientAreNotTracked() throws SQLException {
+        // Given
+        ReplicaRoutingDataSource underTest = underTest(ReadReplicaProperties.Selection.ROUND_ROBIN);
+        Connection connection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(connection);
+
+        // When
+        Connection actual = underTest.getConnection();
+
+        // Then
+        assertThat(actual).isSameAs(connection);
+    }
+
+    @Test
+    void isWriteOnlyTrustsPlainQueries() {
+        // Then
+        assertThat(ReplicaRoutingDataSource.isWrite("  select id from customer")).isFalse();
+        assertThat(ReplicaRoutingDataSource.isWrite("SELECT(1)")).isFalse();
+        assertThat(ReplicaRoutingDataSource.isWrite("\nINSERT INTO customer(name) VALUES (?)")).isTrue();
+        assertThat(ReplicaRoutingDataSource.isWrite("WITH target AS (SELECT 1) UPDATE customer SET age = 1")).isTrue();
+    }
+
+    private ReplicaRoutingDataSource underTest(ReadReplicaProperties.Selection selection) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", firstReplica);
+        replicas.put("replica-2", secondReplica);
+        return new ReplicaRoutingDataSource(primary, replicas, selection, MAX_LAG);
+    }
+
+    private static ResultSet replicaWithLag(DataSource replica, double lagSeconds) throws SQLException {
+        return replica(replica, lagSeconds, 0);
+    }
+
+    private static ResultSet replica(DataSource replica, double lagSeconds, long replayLsn) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lagSeconds);
+        when(resultSet.getLong(2)).thenReturn(replayLsn);
+        return resultSet;
+    }
+}
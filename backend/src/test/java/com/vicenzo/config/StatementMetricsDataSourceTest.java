@@ -0,0 +1,203 @@
+package com.vicenzo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, OutputCaptureExtension.class})
+class StatementMetricsDataSourceTest {
+
+    private static final String SELECT = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE age > ?
+            """;
+    private static final String NORMALIZED_SELECT = "SELECT id, name, email, age FROM customer WHERE age > ?";
+
+    @Mock
+    private DataSource dataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement preparedStatement;
+    @Mock
+    private ResultSet resultSet;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void normalizeCollapsesLiteralsParameterListsAndWhitespace() {
+        // Then
+        assertThat(StatementMetricsDataSource.normalize("""
+                SELECT * FROM customer
+                WHERE name = 'O''Brien' AND age > 21 AND id IN (?, ?, ?)
+                """)).isEqualTo("SELECT * FROM customer WHERE name = ? AND age > ? AND id IN (?, ...)");
+        assertThat(StatementMetricsDataSource.normalize("INSERT INTO customer(name, age) VALUES (?, ?), (?, ?), (?, ?)"))
+                .isEqualTo("INSERT INTO customer(name, age) VALUES (?, ...), ...");
+        assertThat(StatementMetricsDataSource.normalize("SELECT v1.id FROM flyway_schema_history v1"))
+                .isEqualTo("SELECT v1.id FROM flyway_schema_history v1");
+    }
+
+    @Test
+    void normalizeCollapsesLongParameterLists() {
+        // Then
+        assertThat(StatementMetricsDataSource.normalize("DELETE FROM customer WHERE id IN (" + "?, ".repeat(20_000) + "?)"))
+                .isEqualTo("DELETE FROM customer WHERE id IN (?, ...)");
+    }
+
+    @Test
+    void timesQueriesAndCountsFetchedRowsOnClose() throws SQLException {
+        // Given
+        when(connection.prepareStatement(SELECT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        StatementMetricsDataSource underTest = bound(Duration.ofMinutes(1));
+
+        // When
+        try (Connection proxy = underTest.getConnection();
+             PreparedStatement statement = proxy.prepareStatement(SELECT);
+             ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                assertThat(registry.find("jdbc.statement.rows").summary().count()).isZero();
+            }
+        }
+
+        // Then
+        assertThat(registry.get("jdbc.statement").tags("sql", NORMALIZED_SELECT, "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("jdbc.statement.rows").tags("sql", NORMALIZED_SELECT)
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get("jdbc.connection.acquire").tags("sql", NORMALIZED_SELECT)
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsAcquireTimeOncePerConnectionAndUpdatedRows() throws SQLException {
+        // Given
+        String delete = "DELETE FROM customer WHERE id = ?";
+        when(connection.prepareStatement(delete)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        StatementMetricsDataSource underTest = bound(Duration.ofMinutes(1));
+
+        // When
+        try (Connection proxy = underTest.getConnection()) {
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement statement = proxy.prepareStatement(delete)) {
+                    statement.executeUpdate();
+                }
+            }
+        }
+
+        // Then
+        assertThat(registry.get("jdbc.statement").tags("sql", delete, "outcome", "success").timer().count()).isEqualTo(3);
+        assertThat(registry.get("jdbc.statement.rows").tags("sql", delete).summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("jdbc.connection.acquire").tags("sql", delete).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void statementsReportTheConnectionTheyWereCreatedOn() throws SQLException {
+        // Given
+        when(connection.prepareStatement(SELECT)).thenReturn(preparedStatement);
+        StatementMetricsDataSource underTest = bound(Duration.ofMinutes(1));
+
+        // When
+        try (Connection proxy = underTest.getConnection();
+             PreparedStatement statement = proxy.prepareStatement(SELECT)) {
+
+            // Then
+            assertThat(statement.getConnection()).isSameAs(proxy);
+        }
+    }
+
+    @Test
+    void statementsPastTheCapShareTheOtherMeters() throws SQLException {
+        // Given
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        StatementMetricsDataSource underTest = bound(Duration.ofMinutes(1));
+
+        // When
+        try (Connection proxy = underTest.getConnection()) {
+            for (int i = 0; i < StatementMetricsDataSource.MAX_METERED_SQL + 2; i++) {
+                try (PreparedStatement statement = proxy.prepareStatement("DELETE FROM customer_" + i + " WHERE id = ?")) {
+                    statement.executeUpdate();
+                }
+            }
+        }
+
+        // Then
+        assertThat(registry.find("jdbc.statement").tag("outcome", "success").timers())
+                .hasSize(StatementMetricsDataSource.MAX_METERED_SQL + 1);
+        assertThat(registry.get("jdbc.statement").tags("sql", StatementMetricsDataSource.OTHER_SQL, "outcome", "success")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void timesFailedStatements() throws SQLException {
+        // Given
+        when(connection.prepareStatement(SELECT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenThrow(new SQLException("canceling statement due to statement timeout"));
+        StatementMetricsDataSource underTest = bound(Duration.ofMinutes(1));
+
+        // When
+        try (Connection proxy = underTest.getConnection();
+             PreparedStatement statement = proxy.prepareStatement(SELECT)) {
+            assertThatThrownBy(statement::executeQuery).isInstanceOf(SQLException.class);
+        }
+
+        // Then
+        assertThat(registry.get("jdbc.statement").tags("sql", NORMALIZED_SELECT, "outcome", "error")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.find("jdbc.statement.rows").summary().count()).isZero();
+    }
+
+    @Test
+    void logsSlowQueriesWithTheirRows(CapturedOutput output) throws SQLException {
+        // Given
+        when(connection.prepareStatement(SELECT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        StatementMetricsDataSource underTest = bound(Duration.ZERO);
+
+        // When
+        try (Connection proxy = underTest.getConnection();
+             PreparedStatement statement = proxy.prepareStatement(SELECT)) {
+            ResultSet rows = statement.executeQuery();
+            while (rows.next()) {
+                assertThat(output).doesNotContain("slow query");
+            }
+        }
+
+        // Then
+        assertThat(output).contains("slow query duration_ms=").contains("rows=1")
+                .contains("sql=\"" + NORMALIZED_SELECT + "\"");
+    }
+
+    private StatementMetricsDataSource bound(Duration slowQueryThreshold) throws SQLException {
+        when(this.dataSource.getConnection()).thenReturn(connection);
+        StatementMetricsDataSource dataSource = new StatementMetricsDataSource(this.dataSource, slowQueryThreshold, 1.0);
+        dataSource.bindTo(registry);
+        return dataSource;
+    }
+}
@@ -0,0 +1,87 @@
+package com.vicenzo.customer.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private final AdaptiveConcurrencyLimit underTest = new AdaptiveConcurrencyLimit("read", 10, 2, 100, 1.5, 0.2);
+
+    @Test
+    void rejectsAboveTheLimitAndExportsIt() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        for (int i = 0; i < 10; i++) {
+            assertThat(underTest.tryAcquire()).isNotNull();
+        }
+
+        // When
+        AdaptiveConcurrencyLimit.Permit rejected = underTest.tryAcquire();
+
+        // Then
+        assertThat(rejected).isNull();
+        assertThat(registry.get("customer.concurrency.limit").tag("operation", "read").gauge().value()).isEqualTo(10);
+        assertThat(registry.get("customer.concurrency.in.flight").gauge().value()).isEqualTo(10);
+        assertThat(registry.get("customer.concurrency.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void growsWhileFullyUsedAndLatencyHolds() {
+        // When
+        for (int i = 0; i < 50; i++) {
+            underTest.onSample(TimeUnit.MILLISECONDS.toNanos(5), underTest.getLimit(), false);
+        }
+
+        // Then
+        assertThat(underTest.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        // When
+        for (int i = 0; i < 50; i++) {
+            underTest.onSample(TimeUnit.MILLISECONDS.toNanos(5), 1, false);
+        }
+
+        // Then
+        assertThat(underTest.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void shrinksWhenLatencyClimbsDownToTheMinimum() {
+        // Given
+        for (int i = 0; i < 20; i++) {
+            underTest.onSample(TimeUnit.MILLISECONDS.toNanos(5), underTest.getLimit(), false);
+        }
+        int healthyLimit = underTest.getLimit();
+
+        // When
+        underTest.onSample(TimeUnit.MILLISECONDS.toNanos(500), healthyLimit, false);
+        int afterOneSlowSample = underTest.getLimit();
+        for (int i = 0; i < 200; i++) {
+            underTest.onSample(TimeUnit.MILLISECONDS.toNanos(500), underTest.getLimit(), true);
+        }
+
+        // Then
+        assertThat(afterOneSlowSample).isLessThan(healthyLimit);
+        assertThat(underTest.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void releasesItsPermitOnce() {
+        // Given
+        AdaptiveConcurrencyLimit.Permit permit = underTest.tryAcquire();
+
+        // When
+        permit.release(false);
+        permit.release(false);
+
+        // Then
+        assertThat(underTest.getInFlight()).isZero();
+    }
+}
@@ -0,0 +1,69 @@
+package com.vicenzo.customer.controller;
+
+import com.vicenzo.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerConcurrencyLimitInterceptorTest {
+
+    private final AdaptiveConcurrencyLimit reads = new AdaptiveConcurrencyLimit("read", 1, 1, 10, 1.5, 0.2);
+    private final AdaptiveConcurrencyLimit writes = new AdaptiveConcurrencyLimit("write", 1, 1, 10, 1.5, 0.2);
+    private final CustomerConcurrencyLimitInterceptor underTest =
+            new CustomerConcurrencyLimitInterceptor(reads, writes, Duration.ofMillis(1500));
+
+    @Test
+    void rejectsAboveTheLimitWithRetryAfter() {
+        // Given
+        underTest.preHandle(request("GET"), new MockHttpServletResponse(), null);
+
+        // When
+        assertThatThrownBy(() -> underTest.preHandle(request("GET"), new MockHttpServletResponse(), null))
+                .isInstanceOfSatisfying(ServiceUnavailableException.class, e -> {
+                    // Then
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+                });
+    }
+
+    @Test
+    void limitsReadsAndWritesSeparately() {
+        // Given
+        underTest.preHandle(request("GET"), new MockHttpServletResponse(), null);
+
+        // When
+        boolean handled = underTest.preHandle(request("PUT"), new MockHttpServletResponse(), null);
+
+        // Then
+        assertThat(handled).isTrue();
+        assertThat(reads.getInFlight()).isEqualTo(1);
+        assertThat(writes.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesThePermitOnCompletion() {
+        // Given
+        MockHttpServletRequest request = request("DELETE");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        underTest.preHandle(request, response, null);
+
+        // When
+        underTest.afterCompletion(request, response, null, null);
+        underTest.afterCompletion(request, response, null, null);
+
+        // Then
+        assertThat(writes.getInFlight()).isZero();
+        assertThat(underTest.preHandle(request("DELETE"), new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private static MockHttpServletRequest request(String method) {
+        return new MockHttpServletRequest(method, "/api/v1/customers/1");
+    }
+}
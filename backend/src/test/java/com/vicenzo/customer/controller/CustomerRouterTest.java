@@ -0,0 +1,129 @@
+package com.vicenzo.customer.controller;
+
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
+import com.vicenzo.customer.dto.CustomerPage;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.service.ReactiveCustomerService;
+import com.vicenzo.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerRouterTest {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+    @Mock
+    private ReactiveCustomerService customerService;
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient
+                .bindToRouterFunction(new CustomerRouter().customerRoutes(new CustomerHandler(customerService)))
+                .build();
+    }
+
+    @Test
+    void streamsAllCustomersAsJsonArray() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 22);
+        when(customerService.getAllCustomers()).thenReturn(Flux.just(alex, jamila));
+
+        // When
+        // Then
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBodyList(Customer.class)
+                .contains(alex, jamila)
+                .hasSize(2);
+    }
+
+    @Test
+    void streamsNdjsonWhenAccepted() {
+        // Given
+        when(customerService.getAllCustomers()).thenReturn(Flux.just(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+
+        // When
+        // Then
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo("{\"id\":1,\"name\":\"Alex\",\"email\":\"alex@gmail.com\",\"age\":21}\n");
+    }
+
+    @Test
+    void limitSelectsThePagedRoute() {
+        // Given
+        CustomerPage page = new CustomerPage(List.of(new Customer(1L, "Alex", "alex@gmail.com", 21)), "MQ");
+        when(customerService.getCustomersPage("MA", 1)).thenReturn(Mono.just(page));
+
+        // When
+        // Then
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "?limit=1&cursor=MA")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CustomerPage.class)
+                .isEqualTo(page);
+    }
+
+    @Test
+    void idsSelectTheMultiGetRoute() {
+        // Given
+        CustomerMultiGetResult result = new CustomerMultiGetResult(
+                List.of(new Customer(2L, "Jamila", "jamila@gmail.com", 22)), List.of(7L));
+        when(customerService.getCustomers(List.of(2L, 7L, 3L))).thenReturn(Mono.just(result));
+
+        // When
+        // Then
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "?ids=2,7&ids=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CustomerMultiGetResult.class)
+                .isEqualTo(result);
+    }
+
+    @Test
+    void missingCustomerIsNotFound() {
+        // Given
+        when(customerService.getCustomer(7L)).thenReturn(Mono.error(new ResourceNotFoundException("not found")));
+
+        // When
+        // Then
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/7")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void invalidCustomerIdIsBadRequest() {
+        // When
+        // Then
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,242 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDaoTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    private CachingCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CachingCustomerDao(customerDao, "jdbc", 100, Duration.ofMinutes(5), false);
+    }
+
+    @Test
+    void selectCustomerByIdIsReadThrough() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.selectVersionedCustomerById(1L)).thenReturn(Optional.of(new VersionedCustomer(customer, 1L)));
+
+        // When
+        Optional<Customer> first = underTest.selectCustomerById(1L);
+        Optional<Customer> second = underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(first).hasValue(customer);
+        assertThat(second).hasValue(customer);
+        verify(customerDao, times(1)).selectVersionedCustomerById(1L);
+    }
+
+    @Test
+    void selectCustomerByIdReturnsCopies() {
+        // Given
+        when(customerDao.selectVersionedCustomerById(1L))
+                .thenReturn(Optional.of(new VersionedCustomer(new Customer(1L, "Alex", "alex@gmail.com", 21), 1L)));
+
+        // When
+        underTest.selectCustomerById(1L).orElseThrow().setName("Changed");
+
+        // Then
+        assertThat(underTest.selectCustomerById(1L)).get()
+                .extracting(Customer::getName)
+                .isEqualTo("Alex");
+    }
+
+    @Test
+    void plainAndVersionedLookupsShareTheEntry() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.selectVersionedCustomerById(1L)).thenReturn(Optional.of(new VersionedCustomer(customer, 7L)));
+
+        // When
+        Optional<Customer> plain = underTest.selectCustomerById(1L);
+        Optional<VersionedCustomer> versioned = underTest.selectVersionedCustomerById(1L);
+
+        // Then
+        assertThat(plain).hasValue(customer);
+        assertThat(versioned).hasValue(new VersionedCustomer(customer, 7L));
+        verify(customerDao, times(1)).selectVersionedCustomerById(1L);
+    }
+
+    @Test
+    void readOnlyTransactionsBypassTheCacheWhenTheyMayReadFromAReplica() {
+        // Given
+        underTest = new CachingCustomerDao(customerDao, "jdbc", 100, Duration.ofMinutes(5), true);
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.selectVersionedCustomerById(1L)).thenReturn(Optional.of(new VersionedCustomer(customer, 1L)));
+        when(customerDao.existsCustomerWithId(1L)).thenReturn(true);
+
+        // When
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            underTest.selectCustomerById(1L);
+            underTest.selectCustomerById(1L);
+            underTest.existsCustomerWithId(1L);
+            underTest.existsCustomerWithId(1L);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(1L);
+
+        // Then
+        verify(customerDao, times(3)).selectVersionedCustomerById(1L);
+        verify(customerDao, times(2)).existsCustomerWithId(1L);
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyQueriesUncachedIds() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@gmail.com", 22);
+        when(customerDao.selectVersionedCustomerById(1L)).thenReturn(Optional.of(new VersionedCustomer(alex, 1L)));
+        when(customerDao.selectCustomersByIds(List.of(2L, 3L))).thenReturn(List.of(jamila));
+        underTest.selectCustomerById(1L);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1L, 2L, 3L));
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(alex, jamila);
+        verify(customerDao).selectCustomersByIds(List.of(2L, 3L));
+    }
+
+    @Test
+    void negativeExistenceChecksAreCached() {
+        // Given
+        when(customerDao.existsCustomerWithId(7L)).thenReturn(false);
+        when(customerDao.existsCustomerWithEmail("free@gmail.com")).thenReturn(false);
+
+        // When
+        underTest.existsCustomerWithId(7L);
+        underTest.existsCustomerWithEmail("free@gmail.com");
+        boolean idExists = underTest.existsCustomerWithId(7L);
+        boolean emailExists = underTest.existsCustomerWithEmail("free@gmail.com");
+
+        // Then
+        assertThat(idExists).isFalse();
+        assertThat(emailExists).isFalse();
+        verify(customerDao, times(1)).existsCustomerWithId(7L);
+        verify(customerDao, times(1)).existsCustomerWithEmail("free@gmail.com");
+    }
+
+    @Test
+    void takenEmailsAreNotCached() {
+        // Given
+        when(customerDao.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+
+        // When
+        underTest.existsCustomerWithEmail("alex@gmail.com");
+        boolean exists = underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(exists).isTrue();
+        verify(customerDao, times(2)).existsCustomerWithEmail("alex@gmail.com");
+    }
+
+    @Test
+    void insertCustomerInvalidatesItsIdAndEmail() {
+        // Given
+        when(customerDao.existsCustomerWithId(3L)).thenReturn(false, true);
+        when(customerDao.existsCustomerWithEmail("new@gmail.com")).thenReturn(false, true);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.of(3L));
+        underTest.existsCustomerWithId(3L);
+        underTest.existsCustomerWithEmail("new@gmail.com");
+
+        // When
+        underTest.insertCustomer(new Customer("New", "new@gmail.com", 30));
+
+        // Then
+        assertThat(underTest.existsCustomerWithId(3L)).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("new@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerIntoTakenEmailKeepsEntries() {
+        // Given
+        when(customerDao.selectVersionedCustomerById(3L)).thenReturn(Optional.empty());
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.empty());
+        underTest.selectCustomerById(3L);
+
+        // When
+        underTest.insertCustomer(new Customer("New", "new@gmail.com", 30));
+        underTest.selectCustomerById(3L);
+
+        // Then
+        verify(customerDao, times(1)).selectVersionedCustomerById(3L);
+    }
+
+    @Test
+    void updateAndDeleteInvalidateTheCustomer() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.selectVersionedCustomerById(1L)).thenReturn(Optional.of(new VersionedCustomer(customer, 1L)));
+        underTest.selectCustomerById(1L);
+
+        // When
+        underTest.updateCustomer(new Customer(1L, "Alexander", "alex@gmail.com", 22));
+        underTest.selectCustomerById(1L);
+        underTest.deleteCustomerCustomerById(1L);
+        underTest.selectCustomerById(1L);
+
+        // Then
+        verify(customerDao, times(3)).selectVersionedCustomerById(1L);
+    }
+
+    @Test
+    void bulkLoadDropsNegativeEntriesOnly() {
+        // Given
+        when(customerDao.existsCustomerWithId(1L)).thenReturn(true);
+        when(customerDao.existsCustomerWithId(2L)).thenReturn(false);
+        underTest.existsCustomerWithId(1L);
+        underTest.existsCustomerWithId(2L);
+
+        // When
+        underTest.invalidateNegativeEntries();
+        underTest.existsCustomerWithId(1L);
+        underTest.existsCustomerWithId(2L);
+
+        // Then
+        verify(customerDao, times(1)).existsCustomerWithId(1L);
+        verify(customerDao, times(2)).existsCustomerWithId(2L);
+    }
+
+    @Test
+    void publishesHitAndMissCounters() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        when(customerDao.selectVersionedCustomerById(1L)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(1L);
+        underTest.selectCustomerById(1L);
+
+        // Then
+        assertThat(registry.get("cache.gets").tags("cache", "customerById", "result", "hit").functionCounter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("cache.gets").tags("cache", "customerById", "result", "miss").functionCounter().count())
+                .isEqualTo(1);
+    }
+}
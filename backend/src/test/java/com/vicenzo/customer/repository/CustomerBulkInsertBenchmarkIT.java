@@ -0,0 +1,130 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.AbstractTestContainers;
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Inserts the same number of customers through each write path and reports the sql statements it cost, read from
+ * the {@code jdbc.statement} meters of {@link com.vicenzo.config.StatementMetricsDataSource}. A statement is one round
+ * trip, a jdbc batch counts once.
+ * <p>
+ * With ids allocated one at a time and no jdbc batching, the JPA bulk path used to cost two statements per customer,
+ * a {@code nextval} and an insert. Pooled ids and batched inserts bring it down to a few per batch of 50.
+ * <p>
+ * Only runs when asked for:
+ * <pre>
+ * ./mvnw verify -Dbenchmark=true -Dit.test=CustomerBulkInsertBenchmarkIT
+ *     [-Dbenchmark.rows=10000] [-Dbenchmark.chunk-size=500]
+ * </pre>
+ * The report is printed and written to {@code target/bulk-insert-benchmark.csv}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = NONE)
+class CustomerBulkInsertBenchmarkIT extends AbstractTestContainers {
+
+    /**
+     * Write paths, from one entity per transaction to one statement per chunk.
+     */
+    enum WritePath {
+        JPA_SAVE_EACH,
+        JPA_INSERT_ALL,
+        JDBC_INSERT_ALL
+    }
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final int rows = Integer.getInteger("benchmark.rows", 10_000);
+    private final int chunkSize = Integer.getInteger("benchmark.chunk-size", 500);
+
+    @Test
+    void compareBulkInserts() throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add("path,rows,statements,statements_per_1000_rows,nextval_statements,millis,rows_per_second");
+        Map<WritePath, Long> statements = new EnumMap<>(WritePath.class);
+
+        for (WritePath path : WritePath.values()) {
+            List<Customer> customers = customers(path);
+            long statementsBefore = statementCount(sql -> true);
+            long nextvalBefore = statementCount(sql -> sql.contains("nextval"));
+            long start = System.nanoTime();
+            try {
+                insert(path, customers);
+            } finally {
+                long nanos = System.nanoTime() - start;
+                long pathStatements = statementCount(sql -> true) - statementsBefore;
+                statements.put(path, pathStatements);
+                report.add("%s,%d,%d,%.1f,%d,%d,%.1f".formatted(
+                        path, rows, pathStatements, pathStatements * 1000.0 / rows,
+                        statementCount(sql -> sql.contains("nextval")) - nextvalBefore,
+                        nanos / 1_000_000, rows / (nanos / 1e9)));
+                customerRepository.deleteCustomersByIdIn(customers.stream()
+                        .map(Customer::getId)
+                        .filter(Objects::nonNull)
+                        .toList());
+            }
+        }
+
+        report.forEach(System.out::println);
+        Files.write(Path.of("target", "bulk-insert-benchmark.csv"), report);
+        assertThat(statements.get(WritePath.JPA_INSERT_ALL)).isLessThan(rows);
+    }
+
+    private void insert(WritePath path, List<Customer> customers) {
+        switch (path) {
+            case JPA_SAVE_EACH -> customers.forEach(customerRepository::save);
+            case JPA_INSERT_ALL -> insertInChunks(applicationContext.getBean("jpa", CustomerDao.class), customers);
+            case JDBC_INSERT_ALL -> insertInChunks(applicationContext.getBean("jdbc", CustomerDao.class), customers);
+        }
+    }
+
+    private void insertInChunks(CustomerDao customerDao, List<Customer> customers) {
+        for (int from = 0; from < customers.size(); from += chunkSize) {
+            List<Customer> chunk = customers.subList(from, Math.min(from + chunkSize, customers.size()));
+            transactionTemplate.execute(status -> customerDao.insertCustomers(chunk));
+        }
+    }
+
+    private List<Customer> customers(WritePath path) {
+        List<Customer> customers = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            customers.add(new Customer(FAKER.name().fullName(),
+                    "benchmark-%s-%s@example.com".formatted(path, UUID.randomUUID()), 20 + i % 60));
+        }
+        return customers;
+    }
+
+    private long statementCount(Predicate<String> sql) {
+        return meterRegistry.find("jdbc.statement").timers().stream()
+                .filter(timer -> sql.test(timer.getId().getTag("sql")))
+                .mapToLong(Timer::count)
+                .sum();
+    }
+}
@@ -0,0 +1,223 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.AbstractTestContainers;
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.NONE;
+
+/**
+ * Runs the same mixed workload through each {@link CustomerDao} bean at several thread counts and reports
+ * throughput and latency percentiles per operation. The daos are taken as the application wires them, so the
+ * ones named in {@code customer.cache.daos} and {@code customer.email-filter.daos} run decorated, pass
+ * {@code -Dcustomer.cache.daos= -Dcustomer.email-filter.daos=} to measure the bare implementations.
+ * <p>
+ * Only runs when asked for:
+ * <pre>
+ * ./mvnw verify -Dbenchmark=true -Dit.test=CustomerDaoBenchmarkIT
+ *     [-Dbenchmark.daos=jdbc,jpa,list] [-Dbenchmark.threads=1,4,16]
+ *     [-Dbenchmark.warmup=PT5S] [-Dbenchmark.duration=PT15S] [-Dbenchmark.seed-rows=1000]
+ * </pre>
+ * The report is printed and written to {@code target/dao-benchmark.csv}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = NONE)
+class CustomerDaoBenchmarkIT extends AbstractTestContainers {
+
+    private static final int PAGE_SIZE = 50;
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    /**
+     * Operations and their share of the workload.
+     */
+    enum Operation {
+        SELECT_BY_ID(30),
+        SELECT_PAGE(10),
+        EXISTS_BY_ID(10),
+        EXISTS_BY_EMAIL(10),
+        INSERT(15),
+        UPDATE(15),
+        DELETE(10);
+
+        private static final Operation[] BY_WEIGHT = Arrays.stream(values())
+                .flatMap(operation -> IntStream.range(0, operation.weight).mapToObj(i -> operation))
+                .toArray(Operation[]::new);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick() {
+            return BY_WEIGHT[ThreadLocalRandom.current().nextInt(BY_WEIGHT.length)];
+        }
+    }
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final List<String> daos = List.of(System.getProperty("benchmark.daos", "jdbc,jpa,list").split(","));
+    private final int[] threadCounts = Arrays.stream(System.getProperty("benchmark.threads", "1,4,16").split(","))
+            .mapToInt(Integer::parseInt)
+            .toArray();
+    private final Duration warmup = Duration.parse(System.getProperty("benchmark.warmup", "PT5S"));
+    private final Duration duration = Duration.parse(System.getProperty("benchmark.duration", "PT15S"));
+    private final int seedRows = Integer.getInteger("benchmark.seed-rows", 1000);
+
+    @Test
+    void compareCustomerDaos() throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add("dao,threads,operation,count,ops_per_second,p50_ms,p95_ms,p99_ms,max_ms,errors");
+        long errors = 0;
+
+        for (String daoName : daos) {
+            CustomerDao customerDao = applicationContext.getBean(daoName, CustomerDao.class);
+            for (int threads : threadCounts) {
+                errors += run(daoName, customerDao, threads, report);
+            }
+        }
+
+        report.forEach(System.out::println);
+        Files.write(Path.of("target", "dao-benchmark.csv"), report);
+        assertThat(errors).isZero();
+    }
+
+    private long run(String daoName, CustomerDao customerDao, int threads, List<String> report) throws Exception {
+        List<Long> seededIds = seed(daoName, customerDao);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Map<Operation, Timer> timers = new EnumMap<>(Operation.class);
+        Map<Operation, Counter> errors = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            timers.put(operation, Timer.builder("customer.dao.benchmark")
+                    .tag("operation", operation.name())
+                    .publishPercentiles(PERCENTILES)
+                    .percentilePrecision(2)
+                    // keep every sample of the run in the histogram instead of a rolling window
+                    .distributionStatisticExpiry(warmup.plus(duration).multipliedBy(2))
+                    .distributionStatisticBufferLength(1)
+                    .register(registry));
+            errors.put(operation, registry.counter("customer.dao.benchmark.errors", "operation", operation.name()));
+        }
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Deque<Long>> insertedIds = new ArrayList<>();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Deque<Long> inserted = new ArrayDeque<>();
+                insertedIds.add(inserted);
+                workers.add(executor.submit(() -> work(daoName, customerDao, seededIds, inserted,
+                        measureFrom, measureUntil, timers, errors)));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            customerDao.deleteCustomersByIds(seededIds);
+            insertedIds.forEach(customerDao::deleteCustomersByIds);
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        long errorCount = 0;
+        for (Operation operation : Operation.values()) {
+            HistogramSnapshot snapshot = timers.get(operation).takeSnapshot();
+            long operationErrors = (long) errors.get(operation).count();
+            errorCount += operationErrors;
+            StringBuilder line = new StringBuilder("%s,%d,%s,%d,%.1f".formatted(
+                    daoName, threads, operation, snapshot.count(), snapshot.count() / seconds));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                line.append(",%.3f".formatted(percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            line.append(",%.3f,%d".formatted(snapshot.max(TimeUnit.MILLISECONDS), operationErrors));
+            report.add(line.toString());
+        }
+        return errorCount;
+    }
+
+    private List<Long> seed(String daoName, CustomerDao customerDao) {
+        List<Long> ids = new ArrayList<>(seedRows);
+        for (int i = 0; i < seedRows; i++) {
+            Customer customer = new Customer(FAKER.name().fullName(), uniqueEmail(daoName), 20 + i % 60);
+            customerDao.insertCustomer(customer).ifPresent(ids::add);
+        }
+        return ids;
+    }
+
+    private static void work(String daoName,
+                             CustomerDao customerDao,
+                             List<Long> seededIds,
+                             Deque<Long> inserted,
+                             long measureFrom,
+                             long measureUntil,
+                             Map<Operation, Timer> timers,
+                             Map<Operation, Counter> errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start;
+        while ((start = System.nanoTime()) < measureUntil) {
+            Operation operation = Operation.pick();
+            // deletes remove what this worker inserted so reads keep hitting the seeded rows
+            if (operation == Operation.DELETE && inserted.isEmpty()) {
+                operation = Operation.INSERT;
+            }
+            Long seededId = seededIds.get(random.nextInt(seededIds.size()));
+            Customer newCustomer = new Customer("Benchmark Customer", uniqueEmail(daoName), random.nextInt(16, 99));
+
+            start = System.nanoTime();
+            try {
+                switch (operation) {
+                    case SELECT_BY_ID -> customerDao.selectCustomerById(seededId);
+                    case SELECT_PAGE -> customerDao.selectCustomersAfterId(seededId, PAGE_SIZE);
+                    case EXISTS_BY_ID -> customerDao.existsCustomerWithId(random.nextBoolean() ? seededId : -seededId);
+                    case EXISTS_BY_EMAIL -> customerDao.existsCustomerWithEmail(newCustomer.getEmail());
+                    case INSERT -> customerDao.insertCustomer(newCustomer).ifPresent(inserted::add);
+                    case UPDATE -> customerDao.updateCustomerFields(seededId, null, null, null, newCustomer.getAge());
+                    case DELETE -> customerDao.deleteCustomerCustomerById(inserted.poll());
+                }
+            } catch (RuntimeException e) {
+                if (start >= measureFrom) {
+                    errors.get(operation).increment();
+                }
+                continue;
+            }
+            if (start >= measureFrom) {
+                timers.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static String uniqueEmail(String daoName) {
+        return "benchmark-%s-%s@example.com".formatted(daoName, UUID.randomUUID());
+    }
+}
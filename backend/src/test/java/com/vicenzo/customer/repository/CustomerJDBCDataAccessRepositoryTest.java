@@ -7,14 +7,22 @@ import com.vicenzo.customer.model.Customer;
 import com.vicenzo.util.QueryExecutor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJDBCDataAccessRepositoryTest extends AbstractTestContainers {
 
@@ -49,6 +57,63 @@ class CustomerJDBCDataAccessRepositoryTest extends AbstractTestContainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        List<Customer> all = underTest.selectAllCustomers();
+        Long firstId = all.stream().map(Customer::getId).min(Long::compare).orElseThrow();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(firstId, 2);
+
+        // Then
+        assertThat(actual).hasSize(2);
+        assertThat(actual).extracting(Customer::getId)
+                .allMatch(id -> id > firstId)
+                .isSorted();
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        // When
+        List<String> actual;
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            actual = customers.map(Customer::getEmail).toList();
+        }
+
+        // Then
+        assertThat(actual).contains(email);
+    }
+
+    @Test
+    void selectVersionedCustomerByIdReadsTheVersionOfTheRow() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomer(new Customer("Alex", email, 20)).orElseThrow();
+        VersionedCustomer inserted = underTest.selectVersionedCustomerById(id).orElseThrow();
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomerFields(id, null, "Alexander", null, null);
+        Optional<VersionedCustomer> actual = underTest.selectVersionedCustomerById(id);
+
+        // Then
+        assertThat(inserted.customer()).isEqualTo(new Customer(id, "Alex", email, 20));
+        assertThat(actual).contains(new VersionedCustomer(new Customer(id, "Alexander", email, 20), updated.version()));
+        assertThat(updated.version()).isGreaterThan(inserted.version());
+        assertThat(underTest.selectVersionedCustomerById(-1L)).isEmpty();
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -101,19 +166,11 @@ class CustomerJDBCDataAccessRepositoryTest extends AbstractTestContainers {
         );
 
         // When
-        underTest.insertCustomer(customer);
+        Long id = underTest.insertCustomer(customer).orElseThrow();
 
         // Then
-        Long id = underTest.selectAllCustomers()
-                .stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        // When
+        assertThat(customer.getId()).isEqualTo(id);
         Optional<Customer> actual = underTest.selectCustomerById(id);
-        // Then
         assertThat(actual).isPresent().hasValueSatisfying(c -> {
             assertThat(c.getId()).isEqualTo(id);
             assertThat(c.getName()).isEqualTo(customer.getName());
@@ -122,6 +179,55 @@ class CustomerJDBCDataAccessRepositoryTest extends AbstractTestContainers {
         });
     }
 
+    @Test
+    void insertCustomersSkipsTakenEmails() {
+        // Given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String newEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+
+        // When
+        int[] actual = underTest.insertCustomers(List.of(
+                new Customer(FAKER.name().fullName(), takenEmail, 21),
+                new Customer(FAKER.name().fullName(), newEmail, 22)
+        ));
+
+        // Then
+        assertThat(actual).containsExactly(0, 1);
+        assertThat(underTest.existsCustomerWithEmail(newEmail)).isTrue();
+    }
+
+    @Test
+    void insertCustomersSetsIdsAndSkipsEmailsRepeatedInTheBatch() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer first = new Customer(FAKER.name().fullName(), email, 21);
+        Customer repeated = new Customer(FAKER.name().fullName(), email, 22);
+
+        // When
+        int[] actual = underTest.insertCustomers(List.of(first, repeated));
+
+        // Then
+        assertThat(actual).containsExactly(1, 0);
+        assertThat(first.getId()).isNotNull();
+        assertThat(repeated.getId()).isNull();
+        assertThat(underTest.selectCustomerById(first.getId())).hasValue(first);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String missingEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of(email, missingEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
     @Test
     void existsCustomerWithEmail() {
         // Given
@@ -204,13 +310,34 @@ class CustomerJDBCDataAccessRepositoryTest extends AbstractTestContainers {
                 .orElseThrow();
 
         // When
-        underTest.deleteCustomerCustomerById(id);
+        int deleted = underTest.deleteCustomerCustomerById(id);
+        int deletedAgain = underTest.deleteCustomerCustomerById(id);
         Optional<Customer> actual = underTest.selectCustomerById(id);
 
         // Then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedAgain).isZero();
         assertThat(actual).isNotPresent();
     }
 
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        List<Long> ids = Stream.generate(() -> new Customer(FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20))
+                .limit(3)
+                .map(c -> underTest.insertCustomer(c).orElseThrow())
+                .toList();
+
+        // When
+        int deleted = underTest.deleteCustomersByIds(List.of(ids.get(0), ids.get(1), -1L));
+
+        // Then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(underTest.existsCustomerWithId(ids.get(0))).isFalse();
+        assertThat(underTest.existsCustomerWithId(ids.get(2))).isTrue();
+    }
+
     @Test
     void updateCustomer() {
         // Given
@@ -239,6 +366,83 @@ class CustomerJDBCDataAccessRepositoryTest extends AbstractTestContainers {
         assertThat(actual).isPresent().hasValue(fetchedCustomer);
     }
 
+    @Test
+    void updateCustomerFieldsDistinguishesOutcomes() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomer(new Customer("Alex", email, 20)).orElseThrow();
+        underTest.insertCustomer(new Customer("Jamila", takenEmail, 20));
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomerFields(id, null, "Alexander", null, 21);
+        CustomerUpdateResult unchanged = underTest.updateCustomerFields(id, null, "Alexander", email, null);
+        CustomerUpdateResult missing = underTest.updateCustomerFields(-1L, null, "Alexander", null, null);
+
+        // Then
+        assertThat(updated.outcome()).isEqualTo(CustomerUpdateResult.Outcome.UPDATED);
+        assertThat(updated.customer()).isEqualTo(new Customer(id, "Alexander", email, 21));
+        assertThat(updated.version()).isNotNull();
+        assertThat(unchanged).isEqualTo(CustomerUpdateResult.noChanges());
+        assertThat(missing).isEqualTo(CustomerUpdateResult.notFound());
+        assertThatThrownBy(() -> underTest.updateCustomerFields(id, null, null, takenEmail, null))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerFieldsOnlyAppliesToTheExpectedVersion() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomer(new Customer("Alex", email, 20)).orElseThrow();
+        Long version = underTest.updateCustomerFields(id, null, null, null, 21).version();
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomerFields(id, version, "Alexander", null, null);
+        CustomerUpdateResult stale = underTest.updateCustomerFields(id, version, null, null, 30);
+
+        // Then
+        assertThat(updated.outcome()).isEqualTo(CustomerUpdateResult.Outcome.UPDATED);
+        assertThat(updated.version()).isGreaterThan(version);
+        assertThat(stale).isEqualTo(CustomerUpdateResult.versionMismatch());
+        assertThat(underTest.selectCustomerById(id)).contains(new Customer(id, "Alexander", email, 21));
+    }
+
+    @Test
+    void updateCustomerFieldsDoesNotWaitForAnotherWriter() throws SQLException {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Long id = underTest.insertCustomer(new Customer("Alex", email, 20)).orElseThrow();
+
+        try (Connection otherWriter = getJdbcTemplate().getDataSource().getConnection()) {
+            otherWriter.setAutoCommit(false);
+            try (PreparedStatement lock = otherWriter.prepareStatement("SELECT id FROM customer WHERE id = ? FOR UPDATE")) {
+                lock.setLong(1, id);
+                lock.executeQuery();
+            }
+
+            // When
+            // Then
+            assertThatThrownBy(() -> underTest.updateCustomerFields(id, null, "Alexander", null, null))
+                    .isInstanceOf(PessimisticLockingFailureException.class);
+            otherWriter.rollback();
+        }
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsUnknownIds() {
+        // Given
+        Customer first = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20);
+        Customer second = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30);
+        Long firstId = underTest.insertCustomer(first).orElseThrow();
+        Long secondId = underTest.insertCustomer(second).orElseThrow();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(secondId, -1L, firstId));
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(first, second);
+    }
+
     @Test
     void selectCustomersByIdsAndNames() {
         // Given
@@ -6,8 +6,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 class CustomerJPADataAccessRepositoryTest {
@@ -40,6 +47,28 @@ class CustomerJPADataAccessRepositoryTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        Long afterId = 10L;
+        int limit = 5;
+
+        // When
+        underTest.selectCustomersAfterId(afterId, limit);
+
+        // Then
+        verify(customerRepository).findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.ofSize(limit));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // When
+        underTest.streamAllCustomers();
+
+        // Then
+        verify(customerRepository).streamAll();
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -52,16 +81,87 @@ class CustomerJPADataAccessRepositoryTest {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectVersionedCustomerById() {
+        // Given
+        Long id = 1L;
+
+        // When
+        underTest.selectVersionedCustomerById(id);
+
+        // Then
+        verify(customerRepository).findRowById(id);
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L);
+
+        // When
+        underTest.selectCustomersByIds(ids);
+
+        // Then
+        verify(customerRepository).findAllByIdArray(new Long[]{1L, 2L});
+    }
+
     @Test
     void insertCustomer() {
         // Given
-        Customer customer = new Customer(1L, "Vicenzo", "vicenzo@vicenzo.com", 23);
+        Customer customer = new Customer("Vicenzo", "vicenzo@vicenzo.com", 23);
+        when(customerRepository.insertIfEmailFree("Vicenzo", "vicenzo@vicenzo.com", 23)).thenReturn(Optional.of(1L));
 
         // When
-        underTest.insertCustomer(customer);
+        Optional<Long> id = underTest.insertCustomer(customer);
 
         // Then
-        verify(customerRepository).save(customer);
+        assertThat(id).contains(1L);
+        assertThat(customer.getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer("Alex", "alex@example.com", 21),
+                new Customer("Jamila", "jamila@example.com", 22)
+        );
+
+        // When
+        int[] actual = underTest.insertCustomers(customers);
+
+        // Then
+        verify(customerRepository).saveAllAndFlush(customers);
+        assertThat(actual).containsExactly(1, 1);
+    }
+
+    @Test
+    void insertCustomersSkipsTakenAndRepeatedEmails() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@example.com", 21);
+        Customer taken = new Customer("Taken", "taken@example.com", 30);
+        Customer repeated = new Customer("Alex Again", "alex@example.com", 22);
+        when(customerRepository.findExistingEmails(List.of("alex@example.com", "taken@example.com", "alex@example.com")))
+                .thenReturn(Set.of("taken@example.com"));
+
+        // When
+        int[] actual = underTest.insertCustomers(List.of(alex, taken, repeated));
+
+        // Then
+        verify(customerRepository).saveAllAndFlush(List.of(alex));
+        assertThat(actual).containsExactly(1, 0, 0);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        List<String> emails = List.of("alex@example.com", "jamila@example.com");
+
+        // When
+        underTest.selectExistingEmails(emails);
+
+        // Then
+        verify(customerRepository).findExistingEmails(emails);
     }
 
     @Test
@@ -93,11 +193,26 @@ class CustomerJPADataAccessRepositoryTest {
         // Given
         Long id = 1L;
 
+        when(customerRepository.deleteCustomerById(id)).thenReturn(1);
+
+        // When
+        int deleted = underTest.deleteCustomerCustomerById(id);
+
+        // Then
+        assertThat(deleted).isEqualTo(1);
+    }
+
+    @Test
+    void deleteCustomersByIds() {
+        // Given
+        List<Long> ids = List.of(1L, 2L);
+        when(customerRepository.deleteCustomersByIdIn(ids)).thenReturn(2);
+
         // When
-        underTest.deleteCustomerCustomerById(id);
+        int deleted = underTest.deleteCustomersByIds(ids);
 
         // Then
-        verify(customerRepository).deleteById(id);
+        assertThat(deleted).isEqualTo(2);
     }
 
     @Test
@@ -0,0 +1,239 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessRepositoryTest {
+
+    private CustomerListDataAccessRepository underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessRepository();
+    }
+
+    @Test
+    void insertCustomerAssignsIncreasingIds() {
+        // Given
+        Customer first = new Customer("Vicenzo", "vicenzo@vicenzo.com", 23);
+        Customer second = new Customer("Alice", "alice@example.com", 25);
+
+        // When
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+
+        // Then
+        assertThat(first.getId()).isNotNull();
+        assertThat(second.getId()).isGreaterThan(first.getId());
+        assertThat(underTest.selectCustomerById(second.getId())).hasValue(second);
+        assertThat(underTest.existsCustomerWithEmail("alice@example.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerSkipsTakenEmail() {
+        // Given
+        Optional<Long> first = underTest.insertCustomer(new Customer("Vicenzo", "vicenzo@vicenzo.com", 23));
+
+        // When
+        Optional<Long> second = underTest.insertCustomer(new Customer("Other", "vicenzo@vicenzo.com", 30));
+
+        // Then
+        assertThat(first).isPresent();
+        assertThat(second).isEmpty();
+        assertThat(underTest.selectCustomerById(first.get())).get()
+                .extracting(Customer::getName)
+                .isEqualTo("Vicenzo");
+    }
+
+    @Test
+    void updateCustomerReplacesRowAndMovesEmailIndex() {
+        // Given
+        Customer customer = new Customer("Vicenzo", "vicenzo@vicenzo.com", 23);
+        underTest.insertCustomer(customer);
+        int size = underTest.selectAllCustomers().size();
+
+        // When
+        underTest.updateCustomer(new Customer(customer.getId(), "Vicenzo", "new@vicenzo.com", 24));
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(size);
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValue(new Customer(customer.getId(), "Vicenzo", "new@vicenzo.com", 24));
+        assertThat(underTest.existsCustomerWithEmail("vicenzo@vicenzo.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("new@vicenzo.com")).isTrue();
+    }
+
+    @Test
+    void willThrowWhenUpdatingToTakenEmail() {
+        // Given
+        Customer customer = new Customer("Vicenzo", "vicenzo@vicenzo.com", 23);
+        underTest.insertCustomer(customer);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                new Customer(customer.getId(), "Vicenzo", "alex@gmail.com", 23)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+    }
+
+    @Test
+    void returnedCustomersAreCopies() {
+        // Given
+        Customer customer = underTest.selectCustomerById(1L).orElseThrow();
+
+        // When
+        customer.setEmail("changed@example.com");
+
+        // Then
+        assertThat(underTest.selectCustomerById(1L)).get()
+                .extracting(Customer::getEmail)
+                .isEqualTo("alex@gmail.com");
+    }
+
+    @Test
+    void updateCustomerFieldsDistinguishesOutcomes() {
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomerFields(1L, null, null, "alex@example.com", null);
+        CustomerUpdateResult unchanged = underTest.updateCustomerFields(1L, null, "Alex", null, 21);
+        CustomerUpdateResult missing = underTest.updateCustomerFields(99L, null, "Alex", null, null);
+
+        // Then
+        assertThat(updated).isEqualTo(CustomerUpdateResult.updated(new Customer(1L, "Alex", "alex@example.com", 21), 3L));
+        assertThat(unchanged).isEqualTo(CustomerUpdateResult.noChanges());
+        assertThat(missing).isEqualTo(CustomerUpdateResult.notFound());
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThatThrownBy(() -> underTest.updateCustomerFields(1L, null, null, "jamila@gmail.com", null))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerFieldsChecksTheExpectedVersion() {
+        // When
+        CustomerUpdateResult stale = underTest.updateCustomerFields(1L, 2L, "Alexander", null, null);
+        CustomerUpdateResult updated = underTest.updateCustomerFields(1L, 1L, "Alexander", null, null);
+        CustomerUpdateResult replayed = underTest.updateCustomerFields(1L, 1L, "Alexandre", null, null);
+
+        // Then
+        // the two seeded customers took versions 1 and 2
+        assertThat(stale).isEqualTo(CustomerUpdateResult.versionMismatch());
+        assertThat(updated).isEqualTo(CustomerUpdateResult.updated(new Customer(1L, "Alexander", "alex@gmail.com", 21), 3L));
+        assertThat(replayed).isEqualTo(CustomerUpdateResult.versionMismatch());
+        assertThat(underTest.updateCustomerFields(1L, 3L, "Alexandre", null, null).version()).isEqualTo(4L);
+    }
+
+    @Test
+    void selectVersionedCustomerByIdReturnsTheStoredVersion() {
+        // When
+        underTest.updateCustomerFields(2L, null, "Jamila Smith", null, null);
+
+        // Then
+        assertThat(underTest.selectVersionedCustomerById(2L))
+                .contains(new VersionedCustomer(new Customer(2L, "Jamila Smith", "jamila@gmail.com", 21), 3L));
+        assertThat(underTest.selectVersionedCustomerById(99L)).isEmpty();
+    }
+
+    @Test
+    void deleteCustomerCustomerByIdReleasesEmail() {
+        // When
+        int deleted = underTest.deleteCustomerCustomerById(1L);
+
+        // Then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(underTest.deleteCustomerCustomerById(1L)).isZero();
+        assertThat(underTest.existsCustomerWithId(1L)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectCustomerById(1L)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        underTest.insertCustomer(new Customer("Vicenzo", "vicenzo@vicenzo.com", 23));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(1L, 10);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsUnknownIds() {
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(2L, 7L, 1L, 2L));
+
+        // Then
+        assertThat(actual).extracting(Customer::getEmail)
+                .containsExactlyInAnyOrder("alex@gmail.com", "jamila@gmail.com");
+    }
+
+    @Test
+    void concurrentInsertsOfSameEmailRegisterItOnce() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        int attempts = 1_000;
+
+        // When
+        List<Future<int[]>> results = IntStream.range(0, attempts)
+                .mapToObj(i -> executor.submit(() -> underTest.insertCustomers(List.of(
+                        new Customer("Same", "same@example.com", 20),
+                        new Customer("Unique " + i, "unique-" + i + "@example.com", 20)))))
+                .toList();
+        int sameInserted = 0;
+        int uniqueInserted = 0;
+        for (Future<int[]> result : results) {
+            sameInserted += result.get()[0];
+            uniqueInserted += result.get()[1];
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        assertThat(sameInserted).isEqualTo(1);
+        assertThat(uniqueInserted).isEqualTo(attempts);
+        assertThat(underTest.selectAllCustomers()).hasSize(2 + 1 + attempts);
+    }
+
+    @Test
+    void concurrentEmailChangesOfOneCustomerKeepItsEmailIndexed() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<String> emails = List.of("alex@gmail.com", "alexander@gmail.com");
+
+        for (int round = 0; round < 1_000; round++) {
+            // When
+            // several writers move the customer to the same email, and one moves it back
+            String target = emails.get(round % 2);
+            String previous = emails.get((round + 1) % 2);
+            List<Future<CustomerUpdateResult>> results = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> underTest.updateCustomerFields(
+                            1L, null, null, i == 7 ? previous : target, null)))
+                    .toList();
+            for (Future<CustomerUpdateResult> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+
+            // Then
+            String stored = underTest.selectCustomerById(1L).orElseThrow().getEmail();
+            String other = stored.equals(target) ? previous : target;
+            assertThat(underTest.existsCustomerWithEmail(stored)).as("round %s", round).isTrue();
+            assertThat(underTest.existsCustomerWithEmail(other)).as("round %s", round).isFalse();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -9,7 +9,9 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -47,6 +49,67 @@ class CustomerRepositoryTest extends AbstractTestContainers {
         assertThat(actual).isTrue();
     }
 
+    @Test
+    void findAllByIdArraySkipsUnknownIds() {
+        // Given
+        Customer customer = underTest.save(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        ));
+
+        // When
+        List<Customer> actual = underTest.findAllByIdArray(new Long[]{customer.getId(), -1L});
+
+        // Then
+        assertThat(actual).containsExactly(customer);
+    }
+
+    @Test
+    void findRowByIdReadsTheVersion() {
+        // Given
+        Customer customer = underTest.saveAndFlush(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        ));
+
+        Long inserted = underTest.findRowById(customer.getId()).orElseThrow().getVersion();
+
+        // When
+        customer.setName("Renamed");
+        underTest.saveAndFlush(customer);
+        CustomerRepository.CustomerRow actual = underTest.findRowById(customer.getId()).orElseThrow();
+
+        // Then
+        assertThat(actual.getName()).isEqualTo("Renamed");
+        assertThat(actual.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(actual.getVersion()).isGreaterThan(inserted);
+        assertThat(underTest.findRowById(-1L)).isEmpty();
+    }
+
+    @Test
+    void saveAllTakesIdsForManyCustomersFromOneSequenceCall() {
+        // Given
+        List<Customer> customers = IntStream.range(0, 50)
+                .mapToObj(i -> new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        20 + i
+                ))
+                .toList();
+        Long before = getJdbcTemplate().queryForObject("SELECT last_value FROM customer_id_seq", Long.class);
+
+        // When
+        underTest.saveAllAndFlush(customers);
+
+        // Then
+        Long after = getJdbcTemplate().queryForObject("SELECT last_value FROM customer_id_seq", Long.class);
+        // one block of 50 ids per nextval, a block left over by an earlier test may need a second call
+        assertThat(after - before).isLessThanOrEqualTo(100);
+        assertThat(customers).extracting(Customer::getId).doesNotContainNull().doesNotHaveDuplicates();
+    }
+
     @Test
     void existsCustomerByEmailWhenEmailNotPresent() {
         // Given
@@ -0,0 +1,140 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.AbstractTestContainers;
+import com.vicenzo.customer.repository.CustomerVersionRepository.CustomerTableVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerVersionRepositoryTest extends AbstractTestContainers {
+
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private CustomerVersionRepository underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerVersionRepository(jdbcTemplate);
+    }
+
+    @Test
+    void updatesBumpTheVersionUnlessNothingChanged() {
+        // Given
+        Long id = insertCustomer();
+        long inserted = underTest.findVersion(id).orElseThrow();
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET age = age + 1 WHERE id = ?", id);
+        long updated = underTest.findVersion(id).orElseThrow();
+        jdbcTemplate.update("UPDATE customer SET age = age WHERE id = ?", id);
+        long unchanged = underTest.findVersion(id).orElseThrow();
+
+        // Then
+        assertThat(updated).isGreaterThan(inserted);
+        assertThat(unchanged).isEqualTo(updated);
+    }
+
+    @Test
+    void findVersionIsEmptyWithoutCustomer() {
+        // Then
+        assertThat(underTest.findVersion(-1L)).isEmpty();
+    }
+
+    @Test
+    void tableVersionChangesWithEveryWrite() {
+        // Given
+        Long first = insertCustomer();
+        Long second = insertCustomer();
+        CustomerTableVersion initial = underTest.findTableVersion();
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET name = 'Renamed' WHERE id = ?", first);
+        CustomerTableVersion afterUpdate = underTest.findTableVersion();
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", second);
+        CustomerTableVersion afterDelete = underTest.findTableVersion();
+        insertCustomer();
+        CustomerTableVersion afterInsert = underTest.findTableVersion();
+
+        // Then
+        assertThat(afterUpdate.versionSum()).isGreaterThan(initial.versionSum());
+        assertThat(afterDelete.rowCount()).isEqualTo(afterUpdate.rowCount() - 1);
+        assertThat(afterInsert.versionSum()).isGreaterThan(afterDelete.versionSum());
+        assertThat(underTest.findTableVersion()).isEqualTo(afterInsert);
+    }
+
+    @Test
+    void tableVersionChangesWhenUpdatesCommitOutOfVersionOrder() throws Exception {
+        // Given
+        Long first = insertCustomer();
+        Long second = insertCustomer();
+        DataSource dataSource = jdbcTemplate.getDataSource();
+
+        try (Connection earlier = dataSource.getConnection(); Connection later = dataSource.getConnection()) {
+            earlier.setAutoCommit(false);
+            later.setAutoCommit(false);
+
+            // When
+            rename(earlier, first);
+            rename(later, second);
+            later.commit();
+            CustomerTableVersion beforeEarlierCommit = underTest.findTableVersion();
+            earlier.commit();
+
+            // Then
+            // the earlier update drew the lower version, committing it leaves the highest version where it was
+            assertThat(underTest.findVersion(first).orElseThrow())
+                    .isLessThan(underTest.findVersion(second).orElseThrow());
+            assertThat(underTest.findTableVersion()).isNotEqualTo(beforeEarlierCommit);
+        }
+    }
+
+    @Test
+    void pageVersionChangesWithTheCustomersOfThePage() {
+        // Given
+        Long first = insertCustomer();
+        Long second = insertCustomer();
+        String initial = underTest.findPageVersion(first - 1, 2).orElseThrow();
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET name = 'Renamed' WHERE id = ?", second);
+        String afterUpdate = underTest.findPageVersion(first - 1, 2).orElseThrow();
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", first);
+        String afterDelete = underTest.findPageVersion(first - 1, 2).orElseThrow();
+
+        // Then
+        assertThat(afterUpdate).isNotEqualTo(initial);
+        assertThat(afterDelete).isNotEqualTo(afterUpdate);
+        assertThat(underTest.findPageVersion(first - 1, 2)).contains(afterDelete);
+    }
+
+    @Test
+    void pageVersionIsEmptyPastTheLastCustomer() {
+        // Given
+        Long last = insertCustomer();
+
+        // Then
+        assertThat(underTest.findPageVersion(last, 10)).isEmpty();
+    }
+
+    private static void rename(Connection connection, Long id) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE customer SET name = name || '!' WHERE id = ?")) {
+            statement.setLong(1, id);
+            statement.executeUpdate();
+        }
+    }
+
+    private Long insertCustomer() {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO customer(name, email, age)
+                VALUES (?, ?, ?)
+                RETURNING id
+                """, Long.class, FAKER.name().fullName(), UUID.randomUUID() + "@example.com", 20);
+    }
+}
@@ -0,0 +1,105 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EmailFilteringCustomerDaoTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    private EmailFilteringCustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new EmailFilteringCustomerDao(customerDao, "jdbc", 1_000, 0.01, 1024 * 1024);
+    }
+
+    @Test
+    void checksGoToTheDatabaseUntilTheFilterIsBuilt() {
+        // Given
+        when(customerDao.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+
+        // When
+        boolean exists = underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(exists).isTrue();
+        verify(customerDao).existsCustomerWithEmail("alex@gmail.com");
+    }
+
+    @Test
+    void newEmailsSkipTheDatabase() {
+        // Given
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+        underTest.rebuild();
+
+        // When
+        boolean exists = underTest.existsCustomerWithEmail("new@gmail.com");
+
+        // Then
+        assertThat(exists).isFalse();
+        verify(customerDao, never()).existsCustomerWithEmail(anyString());
+    }
+
+    @Test
+    void storedAndWrittenEmailsAreCheckedInTheDatabase() {
+        // Given
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+        when(customerDao.existsCustomerWithEmail(anyString())).thenReturn(true);
+        underTest.rebuild();
+
+        // When
+        underTest.insertCustomer(new Customer("New", "new@gmail.com", 30));
+
+        // Then
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("new@gmail.com")).isTrue();
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesCandidates() {
+        // Given
+        when(customerDao.streamAllCustomers())
+                .thenReturn(Stream.of(new Customer(1L, "Alex", "alex@gmail.com", 21)));
+        when(customerDao.selectExistingEmails(List.of("alex@gmail.com"))).thenReturn(Set.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        Set<String> existing = underTest.selectExistingEmails(List.of("alex@gmail.com", "new@gmail.com"));
+
+        // Then
+        assertThat(existing).containsExactly("alex@gmail.com");
+    }
+
+    @Test
+    void observedFalsePositiveRateStaysNearTheTarget() {
+        // Given
+        when(customerDao.streamAllCustomers()).thenReturn(IntStream.range(0, 1_000)
+                .mapToObj(i -> new Customer((long) i, "Customer", "stored-%s@gmail.com".formatted(i), 30)));
+        underTest.rebuild();
+
+        // When
+        IntStream.range(0, 10_000).forEach(i -> underTest.existsCustomerWithEmail("new-%s@gmail.com".formatted(i)));
+
+        // Then
+        assertThat(underTest.observedFalsePositiveRate()).isLessThan(0.02);
+    }
+}
@@ -0,0 +1,134 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.AbstractTestContainers;
+import com.vicenzo.customer.model.Customer;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveCustomerRepositoryTest extends AbstractTestContainers {
+
+    private ReactiveCustomerRepository underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerRepository(ConnectionFactories.get(ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, postgreSQLContainer.getHost())
+                .option(ConnectionFactoryOptions.PORT, postgreSQLContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+                .option(ConnectionFactoryOptions.DATABASE, postgreSQLContainer.getDatabaseName())
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build()), 2);
+    }
+
+    @Test
+    void findAllStreamsEveryCustomer() {
+        // Given
+        List<Long> ids = List.of(insertCustomer(), insertCustomer(), insertCustomer());
+
+        // When
+        List<Long> actual = underTest.findAll().map(Customer::getId).collectList().block();
+
+        // Then
+        assertThat(actual).containsAll(ids).isSorted();
+    }
+
+    @Test
+    void findAfterIdReturnsTheNextPage() {
+        // Given
+        Long first = insertCustomer();
+        Long second = insertCustomer();
+
+        // When
+        List<Customer> actual = underTest.findAfterId(first, 1).collectList().block();
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(second);
+    }
+
+    @Test
+    void findByIdsSkipsUnknownIds() {
+        // Given
+        Long first = insertCustomer();
+        Long second = insertCustomer();
+
+        // When
+        List<Long> actual = underTest.findByIds(List.of(second, -1L, first)).map(Customer::getId).collectList().block();
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(first, second);
+    }
+
+    @Test
+    void insertReturnsEmptyWhenEmailIsTaken() {
+        // Given
+        String email = uniqueEmail();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+
+        // When
+        Long id = underTest.insert(customer).block();
+        Long duplicate = underTest.insert(new Customer(FAKER.name().fullName(), email, 30)).block();
+
+        // Then
+        assertThat(id).isNotNull().isEqualTo(customer.getId());
+        assertThat(duplicate).isNull();
+        assertThat(underTest.findById(id).block()).isEqualTo(customer);
+    }
+
+    @Test
+    void updateFieldsReportsEachOutcome() {
+        // Given
+        Long id = insertCustomer();
+        Long other = insertCustomer();
+        String takenEmail = underTest.findById(other).block().getEmail();
+
+        // When
+        CustomerUpdateResult updated = underTest.updateFields(id, null, "New Name", null, 40).block();
+        CustomerUpdateResult unchanged = underTest.updateFields(id, null, "New Name", null, null).block();
+        CustomerUpdateResult missing = underTest.updateFields(-1L, null, "New Name", null, null).block();
+        CustomerUpdateResult stale = underTest.updateFields(id, updated.version() - 1, null, null, 41).block();
+
+        // Then
+        assertThat(updated.outcome()).isEqualTo(CustomerUpdateResult.Outcome.UPDATED);
+        assertThat(updated.customer().getName()).isEqualTo("New Name");
+        assertThat(updated.customer().getAge()).isEqualTo(40);
+        assertThat(unchanged.outcome()).isEqualTo(CustomerUpdateResult.Outcome.NO_CHANGES);
+        assertThat(missing.outcome()).isEqualTo(CustomerUpdateResult.Outcome.NOT_FOUND);
+        assertThat(stale.outcome()).isEqualTo(CustomerUpdateResult.Outcome.VERSION_MISMATCH);
+        assertThatThrownBy(() -> underTest.updateFields(id, null, null, takenEmail, null).block())
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void deleteByIdReturnsDeletedCount() {
+        // Given
+        Long id = insertCustomer();
+
+        // When
+        Long deleted = underTest.deleteById(id).block();
+        Long deletedAgain = underTest.deleteById(id).block();
+
+        // Then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedAgain).isZero();
+        assertThat(underTest.findById(id).block()).isNull();
+    }
+
+    private Long insertCustomer() {
+        return underTest.insert(new Customer(FAKER.name().fullName(), uniqueEmail(), 20)).block();
+    }
+
+    private static String uniqueEmail() {
+        return FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+    }
+}
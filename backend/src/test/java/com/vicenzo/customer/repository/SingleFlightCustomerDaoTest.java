@@ -0,0 +1,222 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SingleFlightCustomerDaoTest {
+
+    private static final Customer CUSTOMER = new Customer(1L, "Alex", "alex@gmail.com", 21);
+    private static final VersionedCustomer VERSIONED = new VersionedCustomer(CUSTOMER, 1L);
+
+    @Mock
+    private CustomerDao customerDao;
+    private SingleFlightCustomerDao underTest;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final CountDownLatch release = new CountDownLatch(1);
+    // a lookup counts as queried before it reaches the dao, a caller must not take the blocking stub's place
+    private final CountDownLatch queryStarted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        underTest = new SingleFlightCustomerDao(customerDao, "jdbc", false);
+        underTest.bindTo(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsShareOneQuery() throws Exception {
+        // Given
+        when(customerDao.selectVersionedCustomerById(1L)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(VERSIONED);
+        });
+
+        // When
+        List<Future<Optional<Customer>>> lookups = IntStream.range(0, 8)
+                .mapToObj(i -> executor.submit(() -> underTest.selectCustomerById(1L)))
+                .toList();
+        awaitLookups("coalesced", 7);
+        release.countDown();
+
+        // Then
+        for (Future<Optional<Customer>> lookup : lookups) {
+            assertThat(lookup.get(5, TimeUnit.SECONDS)).hasValue(CUSTOMER).get().isNotSameAs(CUSTOMER);
+        }
+        assertThat(lookups("queried")).isEqualTo(1);
+        verify(customerDao, times(1)).selectVersionedCustomerById(1L);
+    }
+
+    @Test
+    void joinedLookupsGetTheVersionOfTheCustomerTheyGet() throws Exception {
+        // Given
+        when(customerDao.selectVersionedCustomerById(1L)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(VERSIONED);
+        });
+
+        // When
+        Future<Optional<Customer>> querying = executor.submit(() -> underTest.selectCustomerById(1L));
+        Future<Optional<VersionedCustomer>> joining = executor.submit(() -> underTest.selectVersionedCustomerById(1L));
+        awaitLookups("coalesced", 1);
+        release.countDown();
+
+        // Then
+        assertThat(querying.get(5, TimeUnit.SECONDS)).hasValue(CUSTOMER);
+        assertThat(joining.get(5, TimeUnit.SECONDS)).hasValue(VERSIONED).get()
+                .extracting(VersionedCustomer::customer)
+                .isNotSameAs(CUSTOMER);
+    }
+
+    @Test
+    void waitingLookupsGetTheQueryException() {
+        // Given
+        when(customerDao.selectVersionedCustomerById(1L)).thenAnswer(invocation -> {
+            release.await();
+            throw new QueryTimeoutException("canceling statement due to statement timeout");
+        });
+
+        // When
+        Future<Optional<Customer>> querying = executor.submit(() -> underTest.selectCustomerById(1L));
+        Future<Optional<Customer>> waiting = executor.submit(() -> underTest.selectCustomerById(1L));
+        awaitLookups("coalesced", 1);
+        release.countDown();
+
+        // Then
+        assertThatThrownBy(() -> querying.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    void lookupsAfterAWriteDoNotJoinAnEarlierQuery() throws Exception {
+        // Given
+        Customer updated = new Customer(1L, "Alexander", "alex@gmail.com", 21);
+        when(customerDao.selectVersionedCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    queryStarted.countDown();
+                    release.await();
+                    return Optional.of(VERSIONED);
+                })
+                .thenReturn(Optional.of(new VersionedCustomer(updated, 2L)));
+        when(customerDao.updateCustomerFields(1L, null, "Alexander", null, null))
+                .thenReturn(CustomerUpdateResult.updated(updated, 2L));
+        Future<Optional<Customer>> beforeWrite = executor.submit(() -> underTest.selectCustomerById(1L));
+        queryStarted.await();
+
+        // When
+        underTest.updateCustomerFields(1L, null, "Alexander", null, null);
+        Optional<Customer> afterWrite = underTest.selectCustomerById(1L);
+        release.countDown();
+
+        // Then
+        assertThat(afterWrite).hasValue(updated);
+        assertThat(beforeWrite.get(5, TimeUnit.SECONDS)).hasValue(CUSTOMER);
+        assertThat(lookups("coalesced")).isZero();
+    }
+
+    @Test
+    void lookupsInAReadWriteTransactionQueryOnTheirOwn() throws ExecutionException, InterruptedException {
+        // Given
+        when(customerDao.selectVersionedCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    queryStarted.countDown();
+                    release.await();
+                    return Optional.of(VERSIONED);
+                })
+                .thenReturn(Optional.of(VERSIONED));
+        Future<Optional<Customer>> outside = executor.submit(() -> underTest.selectCustomerById(1L));
+        queryStarted.await();
+
+        // When
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        Optional<Customer> inTransaction;
+        try {
+            inTransaction = underTest.selectCustomerById(1L);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        release.countDown();
+
+        // Then
+        assertThat(inTransaction).hasValue(CUSTOMER);
+        assertThat(outside.get()).hasValue(CUSTOMER);
+        assertThat(lookups("coalesced")).isZero();
+        verify(customerDao, times(2)).selectVersionedCustomerById(1L);
+    }
+
+    @Test
+    void lookupsInAReadOnlyTransactionQueryOnTheirOwnWhenTheyMayReadFromAReplica() throws Exception {
+        // Given
+        underTest = new SingleFlightCustomerDao(customerDao, "jdbc", true);
+        when(customerDao.selectVersionedCustomerById(1L))
+                .thenAnswer(invocation -> {
+                    queryStarted.countDown();
+                    release.await();
+                    return Optional.of(VERSIONED);
+                })
+                .thenReturn(Optional.of(VERSIONED));
+        Future<Optional<Customer>> outside = executor.submit(() -> underTest.selectCustomerById(1L));
+        queryStarted.await();
+
+        // When
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Optional<Customer> readOnly;
+        try {
+            readOnly = underTest.selectCustomerById(1L);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        release.countDown();
+
+        // Then
+        assertThat(readOnly).hasValue(CUSTOMER);
+        assertThat(outside.get(5, TimeUnit.SECONDS)).hasValue(CUSTOMER);
+        verify(customerDao, times(2)).selectVersionedCustomerById(1L);
+    }
+
+    private double lookups(String result) {
+        return registry.get("customer.single.flight.lookups").tags("dao", "jdbc", "result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private void awaitLookups(String result, int expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lookups(result) < expected && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(lookups(result)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,104 @@
+package com.vicenzo.customer.repository;
+
+import com.vicenzo.customer.model.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TimedCustomerDaoTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    private SimpleMeterRegistry registry;
+    private CustomerDao underTest;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        TimedCustomerDao timedCustomerDao = new TimedCustomerDao(customerDao, "jdbc");
+        timedCustomerDao.bindTo(registry);
+        underTest = timedCustomerDao.proxy();
+    }
+
+    @Test
+    void registersEveryOperationUpFront() {
+        // Then
+        assertThat(registry.get("customer.dao").tags("dao", "jdbc", "outcome", "success").timers())
+                .hasSize(CustomerDao.class.getMethods().length);
+    }
+
+    @Test
+    void timesCallsAndRecordsRows() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.selectAllCustomers()).thenReturn(List.of(customer, customer, customer));
+
+        // When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        // Then
+        assertThat(actual).hasSize(3);
+        assertThat(registry.get("customer.dao")
+                .tags("dao", "jdbc", "operation", "selectAllCustomers", "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("customer.dao.rows").tags("operation", "selectAllCustomers")
+                .summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void timesFailuresByException() {
+        // Given
+        when(customerDao.updateCustomerFields(1L, null, null, "taken@gmail.com", null))
+                .thenThrow(new DuplicateKeyException("unique_email_constraint"));
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomerFields(1L, null, null, "taken@gmail.com", null))
+                .isInstanceOf(DuplicateKeyException.class);
+
+        // Then
+        assertThat(registry.get("customer.dao")
+                .tags("operation", "updateCustomerFields", "outcome", "error", "exception", "DuplicateKeyException")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsStreamedRowsOnClose() {
+        // Given
+        Customer customer = new Customer(1L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.of(customer, customer));
+
+        // When
+        try (Stream<Customer> customers = underTest.streamAllCustomers()) {
+            assertThat(customers.count()).isEqualTo(2);
+        }
+
+        // Then
+        assertThat(registry.get("customer.dao.rows").tags("operation", "streamAllCustomers")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void existenceChecksRecordNoRows() {
+        // Given
+        when(customerDao.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+
+        // When
+        underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(registry.get("customer.dao.rows").tags("operation", "existsCustomerWithEmail")
+                .summary().count()).isZero();
+    }
+}
@@ -0,0 +1,165 @@
+package com.vicenzo.customer.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vicenzo.customer.config.CustomerBatchProperties;
+import com.vicenzo.customer.dto.CustomerRegistrationResult;
+import com.vicenzo.customer.dto.CustomerRegistrationResult.Status;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBatchRegistrationServiceTest {
+
+    private CustomerBatchRegistrationService underTest;
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<List<Customer>> inserted;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerBatchRegistrationService(
+                customerDao,
+                objectMapper,
+                new TransactionTemplate(transactionManager),
+                new CustomerBatchProperties(2)
+        );
+    }
+
+    @Test
+    void registerCustomersReportsOutcomePerItem() throws Exception {
+        // Given
+        InputStream body = json("""
+                [
+                  {"name": "Alex", "email": "alex@example.com", "age": 21},
+                  {"name": "Taken", "email": "taken@example.com", "age": 30},
+                  {"name": "Alex Again", "email": "alex@example.com", "age": 22},
+                  {"name": "", "email": "blank@example.com", "age": 40},
+                  {"name": "Race", "email": "race@example.com", "age": 50}
+                ]
+                """);
+        when(customerDao.selectExistingEmails(anyList()))
+                .thenReturn(Set.of("taken@example.com"), Set.of(), Set.of());
+        when(customerDao.insertCustomers(anyList()))
+                .thenReturn(new int[]{1}, new int[]{0});
+
+        // When
+        List<CustomerRegistrationResult> actual = register(body);
+
+        // Then
+        assertThat(actual).extracting(CustomerRegistrationResult::index)
+                .containsExactly(0, 1, 2, 3, 4);
+        assertThat(actual).extracting(CustomerRegistrationResult::status)
+                .containsExactly(Status.CREATED, Status.DUPLICATE, Status.DUPLICATE, Status.INVALID, Status.DUPLICATE);
+        assertThat(actual.get(3).message()).isEqualTo("name is required");
+
+        // one lookup per chunk of two, the in-request duplicate never reaches the database
+        verify(customerDao, times(2)).selectExistingEmails(anyList());
+        verify(customerDao, times(2)).insertCustomers(inserted.capture());
+        assertThat(inserted.getAllValues().get(0)).extracting(Customer::getEmail)
+                .containsExactly("alex@example.com");
+        assertThat(inserted.getAllValues().get(1)).extracting(Customer::getEmail)
+                .containsExactly("race@example.com");
+    }
+
+    @Test
+    void registerCustomersWithEmptyArray() throws Exception {
+        // When
+        List<CustomerRegistrationResult> actual = register(json("[]"));
+
+        // Then
+        assertThat(actual).isEmpty();
+        verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenItemIsMalformed() {
+        // Given
+        InputStream body = json("""
+                [{"name": "Alex", "email": "alex@example.com", "age": "twenty"}]
+                """);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> register(body))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("malformed customer at index [0]");
+        verify(customerDao, never()).insertCustomers(any());
+    }
+
+    @Test
+    void malformedItemAfterTheFirstChunkEndsTheResults() throws Exception {
+        // Given
+        InputStream body = json("""
+                [
+                  {"name": "Alex", "email": "alex@example.com", "age": 21},
+                  {"name": "Jamila", "email": "jamila@example.com", "age": 22},
+                  {"name": "Ana", "email": "ana@example.com", "age": 23},
+                  {"name": "Bad", "email": "bad@example.com", "age": "twenty"},
+                  {"name": "Never Read", "email": "never@example.com", "age": 24}
+                ]
+                """);
+        when(customerDao.selectExistingEmails(anyList())).thenReturn(Set.of());
+        when(customerDao.insertCustomers(anyList())).thenReturn(new int[]{1, 1}, new int[]{1});
+
+        // When
+        List<CustomerRegistrationResult> actual = register(body);
+
+        // Then
+        assertThat(actual).extracting(CustomerRegistrationResult::status)
+                .containsExactly(Status.CREATED, Status.CREATED, Status.CREATED, Status.INVALID);
+        assertThat(actual.get(3).index()).isEqualTo(3);
+        assertThat(actual.get(3).message()).isEqualTo("malformed customer at index [3]");
+        verify(customerDao, times(2)).insertCustomers(inserted.capture());
+        assertThat(inserted.getAllValues().get(1)).extracting(Customer::getEmail)
+                .containsExactly("ana@example.com");
+    }
+
+    @Test
+    void willThrowWhenChunkSizeIsNotPositive() {
+        // When
+        // Then
+        assertThatThrownBy(() -> new CustomerBatchProperties(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<CustomerRegistrationResult> register(InputStream body) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        underTest.registerCustomers(body, response);
+        return objectMapper.readValue(response.toByteArray(), new TypeReference<>() {
+        });
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+package com.vicenzo.customer.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerCsvParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parseConvertsValidRowsToCopyRowsAndReportsInvalidOnes() throws Exception {
+        // Given
+        Path file = tempDir.resolve("customers.csv");
+        Files.writeString(file, String.join("\n",
+                "name,email,age",
+                "Alex,alex@example.com,21",
+                "\"Smith, Jamila\",\"jamila@example.com\",22\r",
+                "missing,fields",
+                "",
+                "\"Say \"\"hi\"\"\",hi@example.com,30",
+                "Bad Age,bad@example.com,old",
+                ",noname@example.com,40"
+        ), StandardCharsets.UTF_8);
+
+        // When
+        List<String> copyRows = new ArrayList<>();
+        List<CustomerCsvParser.RowError> errors = new ArrayList<>();
+        long[] counts = new long[2];
+        // tiny segments and splits force several segments and fork/join splits
+        CustomerCsvParser.parse(file, new CustomerCsvParser.Options(64, 16, 10), ForkJoinPool.commonPool(), segment -> {
+            segment.copyRows().forEach(rows -> copyRows.add(new String(rows, StandardCharsets.UTF_8)));
+            errors.addAll(segment.errors());
+            counts[0] += segment.validRows();
+            counts[1] += segment.invalidRows();
+        });
+
+        // Then
+        assertThat(counts).containsExactly(3, 3);
+        List<String> rows = String.join("", copyRows).lines().toList();
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0)).endsWith(",\"Alex\",\"alex@example.com\",21");
+        assertThat(rows.get(1)).endsWith(",\"Smith, Jamila\",\"jamila@example.com\",22");
+        assertThat(rows.get(2)).endsWith(",\"Say \"\"hi\"\"\",\"hi@example.com\",30");
+        // rows are prefixed with their byte offset, which keeps file order
+        assertThat(rows).extracting(row -> Long.parseLong(row.substring(0, row.indexOf(','))))
+                .isSorted()
+                .doesNotHaveDuplicates();
+        assertThat(errors).containsExactly(
+                new CustomerCsvParser.RowError(4, "expected 3 fields but found 2"),
+                new CustomerCsvParser.RowError(7, "age is not a number"),
+                new CustomerCsvParser.RowError(8, "name is required")
+        );
+    }
+
+    @Test
+    void parseEmptyFile() throws Exception {
+        // Given
+        Path file = Files.createFile(tempDir.resolve("empty.csv"));
+
+        // When
+        List<CustomerCsvParser.ParsedChunk> segments = new ArrayList<>();
+        CustomerCsvParser.parse(file, new CustomerCsvParser.Options(64, 16, 10), ForkJoinPool.commonPool(), segments::add);
+
+        // Then
+        assertThat(segments).isEmpty();
+    }
+
+    @Test
+    void splitFields() {
+        assertThat(CustomerCsvParser.splitFields("a,\"b,c\",d")).containsExactly("a", "b,c", "d");
+        assertThat(CustomerCsvParser.splitFields("\"unterminated,a,b")).isNull();
+        assertThat(CustomerCsvParser.splitFields("")).containsExactly("");
+    }
+}
@@ -0,0 +1,72 @@
+package com.vicenzo.customer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerExportServiceTest {
+
+    private CustomerExportService underTest;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private CustomerDao customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerExportService(customerDao, objectMapper);
+    }
+
+    @Test
+    void exportCustomersWritesOneJsonDocumentPerLine() throws Exception {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "Alex", "alex@example.com", 21),
+                new Customer(2L, "Jamila", "jamila@example.com", 22)
+        );
+        AtomicBoolean closed = new AtomicBoolean();
+        when(customerDao.streamAllCustomers())
+                .thenReturn(customers.stream().onClose(() -> closed.set(true)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        underTest.exportCustomers(outputStream);
+
+        // Then
+        String body = outputStream.toString(StandardCharsets.UTF_8);
+        assertThat(body).endsWith("\n");
+        List<String> lines = body.lines().toList();
+        assertThat(lines).hasSize(2).allMatch(line -> line.startsWith("{"));
+        assertThat(objectMapper.readValue(lines.get(0), Customer.class)).isEqualTo(customers.get(0));
+        assertThat(objectMapper.readValue(lines.get(1), Customer.class)).isEqualTo(customers.get(1));
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    void exportCustomersWritesNothingForEmptyTable() throws Exception {
+        // Given
+        when(customerDao.streamAllCustomers()).thenReturn(Stream.empty());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // When
+        underTest.exportCustomers(outputStream);
+
+        // Then
+        assertThat(outputStream.size()).isZero();
+    }
+}
@@ -0,0 +1,92 @@
+package com.vicenzo.customer.service;
+
+import com.vicenzo.AbstractTestContainers;
+import com.vicenzo.customer.config.CustomerImportProperties;
+import com.vicenzo.customer.dto.CustomerImportResult;
+import com.vicenzo.customer.repository.CustomerCopyRepository;
+import com.vicenzo.customer.repository.CustomersBulkLoadedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerImportServiceTest extends AbstractTestContainers {
+
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    private CustomerImportService underTest;
+
+    @BeforeEach
+    void setUp() {
+        // copy, merge and staging cleanup share one transaction, so the template and the repository share a pool
+        underTest = new CustomerImportService(
+                new CustomerCopyRepository(jdbcTemplate),
+                new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())),
+                new CustomerImportProperties(DataSize.ofMegabytes(64), DataSize.ofMegabytes(1), 100),
+                eventPublisher
+        );
+    }
+
+    @Test
+    void importCsvSkipsEmailsRepeatedInTheFileAndEmailsAlreadyTaken() throws Exception {
+        // Given
+        String suffix = UUID.randomUUID().toString();
+        String taken = "taken-" + suffix + "@example.com";
+        String repeated = "repeated-" + suffix + "@example.com";
+        String fresh = "fresh-" + suffix + "@example.com";
+        jdbcTemplate.update("INSERT INTO customer(name, email, age) VALUES ('Existing', ?, 40)", taken);
+        String csv = """
+                name,email,age
+                First,%s,21
+                Taken,%s,30
+                Second,%s,22
+                Fresh,%s,23
+                Blank,,24
+                """.formatted(repeated, taken, repeated, fresh);
+
+        // When
+        CustomerImportResult actual = underTest.importCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(actual.rowsRead()).isEqualTo(5);
+        assertThat(actual.imported()).isEqualTo(2);
+        assertThat(actual.duplicates()).isEqualTo(2);
+        assertThat(actual.invalid()).isEqualTo(1);
+        assertThat(actual.errors()).extracting(CustomerImportResult.RowError::line).containsExactly(6L);
+        // the first occurrence in the file wins, the existing row is left untouched
+        assertThat(jdbcTemplate.queryForList("SELECT name FROM customer WHERE email IN (?, ?, ?) ORDER BY age",
+                String.class, taken, repeated, fresh))
+                .containsExactly("First", "Fresh", "Existing");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_tables WHERE tablename LIKE 'customer_import_%'", Long.class))
+                .isZero();
+        verify(eventPublisher).publishEvent(new CustomersBulkLoadedEvent(2));
+    }
+
+    @Test
+    void importCsvWithOnlyAHeader() throws Exception {
+        // When
+        CustomerImportResult actual = underTest.importCsv(
+                new ByteArrayInputStream("name,email,age\n".getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(0, 0, 0, 0, List.of()));
+    }
+}
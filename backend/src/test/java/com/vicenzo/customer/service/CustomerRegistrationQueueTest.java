@@ -0,0 +1,208 @@
+package com.vicenzo.customer.service;
+
+import com.vicenzo.customer.config.CustomerAsyncRegistrationProperties;
+import com.vicenzo.customer.dto.CustomerRegistrationJob;
+import com.vicenzo.customer.dto.CustomerRegistrationJob.Status;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.exception.RequestValidationException;
+import com.vicenzo.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerRegistrationQueueTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private CustomerRegistrationQueue underTest;
+
+    @AfterEach
+    void tearDown() {
+        if (underTest.isRunning()) {
+            underTest.stop();
+        }
+    }
+
+    @Test
+    void fullBatchIsWrittenInOneInsert() {
+        // Given
+        start(3, Duration.ofMinutes(1), 100);
+        when(customerDao.insertCustomers(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            customers.get(0).setId(1L);
+            customers.get(2).setId(2L);
+            return new int[]{1, 0, 1};
+        });
+
+        // When
+        CustomerRegistrationJob alex = underTest.submit(new CustomerRegistrationRequest("Alex", "alex@example.com", 21));
+        CustomerRegistrationJob taken = underTest.submit(new CustomerRegistrationRequest("Taken", "taken@example.com", 30));
+        CustomerRegistrationJob jamila = underTest.submit(new CustomerRegistrationRequest("Jamila", "jamila@example.com", 22));
+
+        // Then
+        assertThat(alex.status()).isEqualTo(Status.QUEUED);
+        assertThat(awaitOutcome(alex)).isEqualTo(alex.created(1L));
+        assertThat(awaitOutcome(taken)).isEqualTo(taken.duplicate());
+        assertThat(awaitOutcome(jamila)).isEqualTo(jamila.created(2L));
+        verify(customerDao, times(1)).insertCustomers(anyList());
+        assertThat(registry.get("customer.registration.batch.size").summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("customer.registration.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void partialBatchIsWrittenOnceItsOldestRegistrationWaitedLongEnough() {
+        // Given
+        start(100, Duration.ofMillis(50), 100);
+        when(customerDao.insertCustomers(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            customers.get(0).setId(1L);
+            return new int[]{1};
+        });
+
+        // When
+        CustomerRegistrationJob job = underTest.submit(new CustomerRegistrationRequest("Alex", "alex@example.com", 21));
+
+        // Then
+        assertThat(awaitOutcome(job).status()).isEqualTo(Status.CREATED);
+    }
+
+    @Test
+    void failedBatchFailsEveryRegistrationInIt() {
+        // Given
+        start(2, Duration.ofMinutes(1), 100);
+        when(customerDao.insertCustomers(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // When
+        CustomerRegistrationJob alex = underTest.submit(new CustomerRegistrationRequest("Alex", "alex@example.com", 21));
+        CustomerRegistrationJob jamila = underTest.submit(new CustomerRegistrationRequest("Jamila", "jamila@example.com", 22));
+
+        // Then
+        assertThat(awaitOutcome(alex).status()).isEqualTo(Status.FAILED);
+        assertThat(awaitOutcome(jamila).status()).isEqualTo(Status.FAILED);
+    }
+
+    @Test
+    void batchFailingWithAnErrorLeavesTheWriterRunning() {
+        // Given
+        start(1, Duration.ofMinutes(1), 100);
+        when(customerDao.insertCustomers(anyList()))
+                .thenThrow(new StackOverflowError())
+                .thenAnswer(invocation -> {
+                    List<Customer> customers = invocation.getArgument(0);
+                    customers.get(0).setId(1L);
+                    return new int[]{1};
+                });
+
+        // When
+        CustomerRegistrationJob alex = underTest.submit(new CustomerRegistrationRequest("Alex", "alex@example.com", 21));
+        CustomerRegistrationJob jamila = underTest.submit(new CustomerRegistrationRequest("Jamila", "jamila@example.com", 22));
+
+        // Then
+        assertThat(awaitOutcome(alex).status()).isEqualTo(Status.FAILED);
+        assertThat(awaitOutcome(jamila)).isEqualTo(jamila.created(1L));
+    }
+
+    @Test
+    void willThrowWhenTheQueueIsFull() {
+        // Given
+        // the first registration waits in a batch that is neither full nor old enough
+        start(2, Duration.ofMinutes(1), 1);
+        underTest.submit(new CustomerRegistrationRequest("Alex", "alex@example.com", 21));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.submit(new CustomerRegistrationRequest("Jamila", "jamila@example.com", 22)))
+                .isInstanceOf(ServiceUnavailableException.class);
+        assertThat(registry.get("customer.registration.queue.rejected").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void willThrowWhenTheRegistrationIsInvalid() {
+        // Given
+        start(2, Duration.ofMinutes(1), 100);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.submit(new CustomerRegistrationRequest("", "alex@example.com", 21)))
+                .isInstanceOf(RequestValidationException.class);
+        verify(customerDao, never()).insertCustomers(anyList());
+    }
+
+    @Test
+    void stopWritesWhatIsQueued() {
+        // Given
+        start(100, Duration.ofMinutes(1), 100);
+        when(customerDao.insertCustomers(anyList())).thenReturn(new int[]{0});
+        CustomerRegistrationJob job = underTest.submit(new CustomerRegistrationRequest("Alex", "alex@example.com", 21));
+
+        // When
+        underTest.stop();
+
+        // Then
+        assertThat(underTest.getJob(job.id())).hasValue(job.duplicate());
+        assertThatThrownBy(() -> underTest.submit(new CustomerRegistrationRequest("Jamila", "jamila@example.com", 22)))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    void queuedJobsStayPollablePastTheRetainedOutcomes() {
+        // Given
+        start(100, Duration.ofMinutes(1), 100, 1);
+
+        // When
+        List<CustomerRegistrationJob> queued = IntStream.range(0, 50)
+                .mapToObj(i -> underTest.submit(new CustomerRegistrationRequest("Alex", "alex" + i + "@example.com", 21)))
+                .toList();
+
+        // Then
+        queued.forEach(job -> assertThat(underTest.getJob(job.id())).hasValue(job));
+    }
+
+    private void start(int maxBatchSize, Duration maxBatchDelay, int queueCapacity) {
+        start(maxBatchSize, maxBatchDelay, queueCapacity, 1000);
+    }
+
+    private void start(int maxBatchSize, Duration maxBatchDelay, int queueCapacity, long maxJobs) {
+        underTest = new CustomerRegistrationQueue(customerDao, new TransactionTemplate(transactionManager),
+                new CustomerAsyncRegistrationProperties(true, queueCapacity, maxBatchSize, maxBatchDelay,
+                        Duration.ofMinutes(10), maxJobs, Duration.ofSeconds(1)));
+        underTest.bindTo(registry);
+        underTest.start();
+    }
+
+    private CustomerRegistrationJob awaitOutcome(CustomerRegistrationJob job) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        CustomerRegistrationJob current = underTest.getJob(job.id()).orElseThrow();
+        while (current.status() == Status.QUEUED && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            current = underTest.getJob(job.id()).orElseThrow();
+        }
+        return current;
+    }
+}
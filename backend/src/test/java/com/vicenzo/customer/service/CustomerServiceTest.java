@@ -1,10 +1,18 @@
 package com.vicenzo.customer.service;
 
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
+import com.vicenzo.customer.dto.CustomerPage;
 import com.vicenzo.customer.dto.CustomerRegistrationRequest;
 import com.vicenzo.customer.dto.CustomerUpdateRequest;
 import com.vicenzo.customer.model.Customer;
 import com.vicenzo.customer.repository.CustomerDao;
+import com.vicenzo.customer.repository.CustomerUpdateResult;
+import com.vicenzo.customer.repository.CustomerVersionRepository;
+import com.vicenzo.customer.repository.CustomerVersionRepository.CustomerTableVersion;
+import com.vicenzo.customer.repository.VersionedCustomer;
+import com.vicenzo.exception.ConcurrentUpdateException;
 import com.vicenzo.exception.DuplicateResourceException;
+import com.vicenzo.exception.PreconditionFailedException;
 import com.vicenzo.exception.RequestValidationException;
 import com.vicenzo.exception.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,8 +21,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -27,10 +42,12 @@ class CustomerServiceTest {
 
     @Mock
     private CustomerDao customerDao;
+    @Mock
+    private CustomerVersionRepository customerVersionRepository;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, customerVersionRepository);
     }
 
 
@@ -43,6 +60,50 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void canGetFirstCustomersPage() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1L, "Alex", "alex@example.com", 21),
+                new Customer(2L, "Jamila", "jamila@example.com", 22),
+                new Customer(3L, "Vicenzo", "vicenzo@vicenzo.com", 23)
+        );
+        when(customerDao.selectCustomersAfterId(0L, 3)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(null, 2);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(customers.get(0), customers.get(1));
+        assertThat(actual.nextCursor()).isNotNull();
+
+        // the cursor resumes right after the last customer of the page
+        when(customerDao.selectCustomersAfterId(2L, 3)).thenReturn(List.of(customers.get(2)));
+        CustomerPage next = underTest.getCustomersPage(actual.nextCursor(), 2);
+        assertThat(next.customers()).containsExactly(customers.get(2));
+        assertThat(next.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenPageLimitIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersPage(null, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
+
+        verify(customerDao, never()).selectCustomersAfterId(any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenPageCursorIsInvalid() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersPage("not a cursor", 10))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor");
+    }
+
     @Test
     void canGetCustomer() {
         // Given
@@ -77,20 +138,145 @@ class CustomerServiceTest {
 
     }
 
+    @Test
+    void canGetCustomersByIdsInRequestOrder() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@example.com", 21);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@example.com", 22);
+        when(customerDao.selectCustomersByIds(List.of(2L, 7L, 1L))).thenReturn(List.of(alex, jamila));
+
+        // When
+        CustomerMultiGetResult actual = underTest.getCustomers(Arrays.asList(2L, 7L, null, 1L, 2L));
+
+        // Then
+        assertThat(actual.customers()).containsExactly(jamila, alex);
+        assertThat(actual.missingIds()).containsExactly(7L);
+    }
+
+    @Test
+    void willThrowWhenTooManyIdsAreRequested() {
+        // Given
+        List<Long> ids = LongStream.rangeClosed(1, CustomerService.MAX_PAGE_SIZE + 1).boxed().toList();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomers(ids))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("at most %s ids can be requested at once".formatted(CustomerService.MAX_PAGE_SIZE));
+
+        verify(customerDao, never()).selectCustomersByIds(any());
+    }
+
+    @Test
+    void getCustomerTagsTheBodyWithTheVersionItWasReadWith() {
+        // Given
+        Customer customer = new Customer(10L, "Alex", "alex@gmail.com", 21);
+        when(customerDao.selectVersionedCustomerById(10L))
+                .thenReturn(Optional.of(new VersionedCustomer(customer, 42L)));
+        List<String> etags = new ArrayList<>();
+
+        // When
+        Customer actual = underTest.getCustomer(10L, etag -> !etags.add(etag));
+
+        // Then
+        assertThat(actual).isEqualTo(customer);
+        assertThat(etags).containsExactly("42");
+        verifyNoInteractions(customerVersionRepository);
+    }
+
+    @Test
+    void getCustomerSkipsTheBodyWhenNotModified() {
+        // Given
+        when(customerDao.selectVersionedCustomerById(10L))
+                .thenReturn(Optional.of(new VersionedCustomer(new Customer(10L, "Alex", "alex@gmail.com", 21), 42L)));
+
+        // When
+        Customer actual = underTest.getCustomer(10L, "42"::equals);
+
+        // Then
+        assertThat(actual).isNull();
+    }
+
+    @Test
+    void getCustomerWithETagWillThrowWhenNotFound() {
+        // Given
+        when(customerDao.selectVersionedCustomerById(10L)).thenReturn(Optional.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomer(10L, etag -> false))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [10] not found");
+    }
+
+    @Test
+    void customersETagCombinesVersionSumAndCount() {
+        // Given
+        when(customerVersionRepository.findTableVersion())
+                .thenReturn(new CustomerTableVersion(BigInteger.valueOf(42L), 3L));
+
+        // When
+        String actual = underTest.getCustomersETag();
+
+        // Then
+        assertThat(actual).isEqualTo("42-3");
+    }
+
+    @Test
+    void customersPageETagCoversThePageAndTheNextCustomer() {
+        // Given
+        when(customerVersionRepository.findPageVersion(7L, 11)).thenReturn(Optional.of("abc"));
+
+        // When
+        String actual = underTest.getCustomersPageETag(CustomerService.encodeCursor(7L), 10);
+
+        // Then
+        assertThat(actual).isEqualTo("abc");
+    }
+
+    @Test
+    void customersPageETagOfAnEmptyPage() {
+        // Given
+        when(customerVersionRepository.findPageVersion(0L, 11)).thenReturn(Optional.empty());
+
+        // When
+        String actual = underTest.getCustomersPageETag(null, 10);
+
+        // Then
+        assertThat(actual).isEqualTo("empty");
+    }
+
+    @Test
+    void getAllCustomersReadsTheBodyWhenModified() {
+        // Given
+        List<Customer> customers = List.of(new Customer(1L, "Alex", "alex@gmail.com", 21));
+        when(customerVersionRepository.findTableVersion())
+                .thenReturn(new CustomerTableVersion(BigInteger.valueOf(42L), 1L));
+        when(customerDao.selectAllCustomers()).thenReturn(customers);
+
+        // When
+        List<Customer> actual = underTest.getAllCustomers("41-1"::equals);
+
+        // Then
+        assertThat(actual).isEqualTo(customers);
+    }
+
     @Test
     void addCustomer() {
         // Given
         String email = "vicenzo@vicenzo.com";
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.of(1L));
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Vicenzo", email, 23);
 
         // When
-        underTest.addCustomer(request);
+        Long id = underTest.addCustomer(request);
 
         // Then
+        assertThat(id).isEqualTo(1L);
+        verify(customerDao, never()).existsCustomerWithEmail(any());
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
                 Customer.class
         );
@@ -108,18 +294,31 @@ class CustomerServiceTest {
     void willThrowWhenEmailExistsWhileAddingACustomer() {
         // Given
         String email = "vicenzo@vicenzo.com";
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+        when(customerDao.insertCustomer(any())).thenReturn(Optional.empty());
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Vicenzo", email, 23);
 
         // When
+        // Then
         assertThatThrownBy(() -> underTest.addCustomer(request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
 
-        // Then
-        verify(customerDao, never()).insertCustomer(any());
+    }
+
+    @Test
+    void willThrowWhenRegistrationIsMissingFields() {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Vicenzo", "vicenzo@vicenzo.com", null);
+
+        // When
+        assertThatThrownBy(() -> underTest.addCustomer(request))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("age is required");
 
+        // Then
+        verifyNoInteractions(customerDao);
     }
 
     @Test
@@ -127,13 +326,14 @@ class CustomerServiceTest {
         // Given
         Long id = 10L;
 
-        when(customerDao.existsCustomerWithId(id)).thenReturn(true);
+        when(customerDao.deleteCustomerCustomerById(id)).thenReturn(1);
 
         // When
         underTest.deleteCustomerById(id);
 
         // Then
         verify(customerDao).deleteCustomerCustomerById(id);
+        verify(customerDao, never()).existsCustomerWithId(any());
     }
 
     @Test
@@ -141,187 +341,193 @@ class CustomerServiceTest {
         // Given
         Long id = 10L;
 
-        when(customerDao.existsCustomerWithId(id)).thenReturn(false);
+        when(customerDao.deleteCustomerCustomerById(id)).thenReturn(0);
 
         // When
+        // Then
         assertThatThrownBy(() -> underTest.deleteCustomerById(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with id [%s] not found".formatted(id));
-
-        // Then
-        verify(customerDao, never()).deleteCustomerCustomerById(any());
     }
 
     @Test
     void canUpdateAllCustomerProperties() {
         // Given
         Long id = 10L;
-
-        Customer customer = new Customer(
-                id, "Alex", "alex@example.com", 13);
-
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
-
         String email = "vicenzo@vicenzo.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
                 "Vicenzo", email, 23);
+        Customer updated = new Customer(id, "Vicenzo", email, 23);
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+        when(customerDao.updateCustomerFields(id, null, "Vicenzo", email, 23))
+                .thenReturn(CustomerUpdateResult.updated(updated, 42L));
 
         // When
-        underTest.updateCustomer(id, updateRequest);
+        Customer actual = underTest.updateCustomer(id, null, updateRequest).customer();
 
         // Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
-        );
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
-
-        assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(updateRequest.email());
-        assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+        assertThat(actual).isEqualTo(updated);
+        verify(customerDao, never()).selectCustomerById(any());
+        verify(customerDao, never()).existsCustomerWithEmail(any());
     }
 
     @Test
     void canUpdateOnlyCustomerName() {
         // Given
         Long id = 10L;
-        String email = "alex@example.com";
-        Customer customer = new Customer(
-                id, "Alex", email, 23);
-
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
-
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
                 "Vicenzo", null, null);
+        Customer updated = new Customer(id, "Vicenzo", "alex@example.com", 23);
+
+        when(customerDao.updateCustomerFields(id, null, "Vicenzo", null, null))
+                .thenReturn(CustomerUpdateResult.updated(updated, 42L));
 
         // When
-        underTest.updateCustomer(id, updateRequest);
+        Customer actual = underTest.updateCustomer(id, null, updateRequest).customer();
 
         // Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
-        );
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
-
-        assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(actual).isEqualTo(updated);
     }
 
     @Test
-    void canUpdateOnlyCustomerEmail() {
+    void blankFieldsAreNotUpdated() {
         // Given
         Long id = 10L;
-        Customer customer = new Customer(
-                id, "Alex", "alex@example.com", 13);
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                " ", "", 20);
+        Customer updated = new Customer(id, "Alex", "alex@example.com", 20);
 
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
+        when(customerDao.updateCustomerFields(id, null, null, null, 20))
+                .thenReturn(CustomerUpdateResult.updated(updated, 42L));
+
+        // When
+        Customer actual = underTest.updateCustomer(id, null, updateRequest).customer();
+
+        // Then
+        assertThat(actual).isEqualTo(updated);
+    }
 
+    @Test
+    void willThrowEmailExistWhenUpdatingCustomer() {
+        // Given
+        Long id = 10L;
         String email = "vicenzo@vicenzo.com";
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
                 null, email, null);
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+        when(customerDao.updateCustomerFields(id, null, null, email, null))
+                .thenThrow(new DuplicateKeyException("unique_email_constraint"));
 
         // When
-        underTest.updateCustomer(id, updateRequest);
-
         // Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
-        );
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
-
-        assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(email);
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThatThrownBy(() -> underTest.updateCustomer(id, null, updateRequest))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
     }
 
     @Test
-    void canUpdateOnlyCustomerAge() {
+    void willThrowNoDataChangesWhenUpdatingCustomer() {
         // Given
         Long id = 10L;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
+                null, null, 13); // no changes in data of updateRequest and  customer.
 
-        Customer customer = new Customer(
-                id, "Alex", "alex@example.com", 13);
+        when(customerDao.updateCustomerFields(id, null, null, null, 13))
+                .thenReturn(CustomerUpdateResult.noChanges());
 
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, null, updateRequest))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data changes found");
+    }
 
+    @Test
+    void willThrowNotFoundWhenUpdatingMissingCustomer() {
+        // Given
+        Long id = 10L;
         CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
-                null, null, 20);
+                "Vicenzo", null, null);
 
-        // When
-        underTest.updateCustomer(id, updateRequest);
+        when(customerDao.updateCustomerFields(id, null, "Vicenzo", null, null))
+                .thenReturn(CustomerUpdateResult.notFound());
 
+        // When
         // Then
-        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
-                Customer.class
-        );
-        verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
-        Customer capturedCustomer = customerArgumentCaptor.getValue();
-
-        assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
+        assertThatThrownBy(() -> underTest.updateCustomer(id, null, updateRequest))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
     }
 
     @Test
-    void willThrowEmailExistWhenUpdatingCustomer() {
+    void updateChecksTheIfMatchVersion() {
         // Given
         Long id = 10L;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Vicenzo", null, null);
+        Customer updated = new Customer(id, "Vicenzo", "alex@example.com", 23);
+        when(customerDao.updateCustomerFields(id, 41L, "Vicenzo", null, null))
+                .thenReturn(CustomerUpdateResult.updated(updated, 42L));
 
-        Customer customer = new Customer(
-                id, "Alex", "alex@example.com", 13);
-
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(id, "\"41\"", updateRequest);
 
-        String email = "vicenzo@vicenzo.com";
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
-                null, email, null);
+        // Then
+        assertThat(actual.customer()).isEqualTo(updated);
+        assertThat(actual.version()).isEqualTo(42L);
+    }
 
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+    @Test
+    void willThrowPreconditionFailedWhenVersionChanged() {
+        // Given
+        Long id = 10L;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Vicenzo", null, null);
+        when(customerDao.updateCustomerFields(id, 41L, "Vicenzo", null, null))
+                .thenReturn(CustomerUpdateResult.versionMismatch());
 
         // When
-        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
-                .isInstanceOf(DuplicateResourceException.class)
-                .hasMessage("email already taken");
-
         // Then
-        verify(customerDao, never()).updateCustomer(any());
+        assertThatThrownBy(() -> underTest.updateCustomer(id, "\"41\"", updateRequest))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [%s] was changed since it was read".formatted(id));
     }
 
     @Test
-    void willThrowNoDataChangesWhenUpdatingCustomer() {
+    void willThrowConflictWhileAnotherRequestUpdatesTheCustomer() {
         // Given
         Long id = 10L;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Vicenzo", null, null);
+        when(customerDao.updateCustomerFields(id, null, "Vicenzo", null, null))
+                .thenThrow(new CannotAcquireLockException("could not obtain lock on row in relation \"customer\""));
 
-        Customer customer = new Customer(
-                id, "Alex", "alex@example.com", 13);
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, null, updateRequest))
+                .isInstanceOf(ConcurrentUpdateException.class);
+    }
 
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
+    @Test
+    void ifMatchAcceptsOneStrongTagOrAnyVersion() {
+        // Then
+        assertThat(CustomerService.expectedVersion(null)).isNull();
+        assertThat(CustomerService.expectedVersion("*")).isNull();
+        assertThat(CustomerService.expectedVersion("\"42\"")).isEqualTo(42L);
+        assertThatThrownBy(() -> CustomerService.expectedVersion("W/\"42\""))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThatThrownBy(() -> CustomerService.expectedVersion("\"41\", \"42\""))
+                .isInstanceOf(RequestValidationException.class);
+    }
 
-        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(
-                null, null, 13); // no changes in data of updateRequest and  customer.
+    @Test
+    void willThrowPreconditionFailedWhenConditionalUpdateFindsNoCustomer() {
+        // Given
+        Long id = 10L;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("Vicenzo", null, null);
+        when(customerDao.updateCustomerFields(id, 41L, "Vicenzo", null, null))
+                .thenReturn(CustomerUpdateResult.notFound());
 
         // When
-        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest))
-                .isInstanceOf(RequestValidationException.class)
-                .hasMessage("no data changes found");
-
         // Then
-        verify(customerDao, never()).updateCustomer(any());
+        assertThatThrownBy(() -> underTest.updateCustomer(id, "\"41\"", updateRequest))
+                .isInstanceOf(PreconditionFailedException.class);
     }
-}
\ No newline at end of file
+}
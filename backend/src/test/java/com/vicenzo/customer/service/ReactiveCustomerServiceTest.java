@@ -0,0 +1,159 @@
+package com.vicenzo.customer.service;
+
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
+import com.vicenzo.customer.dto.CustomerPage;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.dto.CustomerUpdateRequest;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerUpdateResult;
+import com.vicenzo.customer.repository.ReactiveCustomerRepository;
+import com.vicenzo.exception.DuplicateResourceException;
+import com.vicenzo.exception.PreconditionFailedException;
+import com.vicenzo.exception.RequestValidationException;
+import com.vicenzo.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+
+    @Mock
+    private ReactiveCustomerRepository customerRepository;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerRepository);
+    }
+
+    @Test
+    void canGetCustomersPage() {
+        // Given
+        Customer first = new Customer(1L, "Alex", "alex@example.com", 21);
+        Customer second = new Customer(2L, "Jamila", "jamila@example.com", 22);
+        when(customerRepository.findAfterId(0L, 2)).thenReturn(Flux.just(first, second));
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(null, 1).block();
+
+        // Then
+        assertThat(actual.customers()).containsExactly(first);
+        assertThat(CustomerService.decodeCursor(actual.nextCursor())).isEqualTo(1L);
+    }
+
+    @Test
+    void willErrorWhenPageLimitIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersPage(null, 0).block())
+                .isInstanceOf(RequestValidationException.class);
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    void canGetCustomersByIdsInRequestOrder() {
+        // Given
+        Customer alex = new Customer(1L, "Alex", "alex@example.com", 21);
+        Customer jamila = new Customer(2L, "Jamila", "jamila@example.com", 22);
+        when(customerRepository.findByIds(List.of(2L, 7L, 1L))).thenReturn(Flux.just(alex, jamila));
+
+        // When
+        CustomerMultiGetResult actual = underTest.getCustomers(List.of(2L, 7L, 1L, 2L)).block();
+
+        // Then
+        assertThat(actual.customers()).containsExactly(jamila, alex);
+        assertThat(actual.missingIds()).containsExactly(7L);
+    }
+
+    @Test
+    void willErrorWhenCustomerIsMissing() {
+        // Given
+        when(customerRepository.findById(7L)).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomer(7L).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [7] not found");
+    }
+
+    @Test
+    void willErrorWhenEmailIsTakenOnRegistration() {
+        // Given
+        when(customerRepository.insert(any())).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomer(
+                new CustomerRegistrationRequest("Alex", "alex@example.com", 21)).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void willErrorWhenRegistrationIsInvalid() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomer(new CustomerRegistrationRequest("Alex", "", 21)).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("email is required");
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    void willErrorWhenNothingWasDeleted() {
+        // Given
+        when(customerRepository.deleteById(7L)).thenReturn(Mono.just(0L));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(7L).block())
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void updateMapsOutcomesToErrors() {
+        // Given
+        when(customerRepository.updateFields(1L, null, null, null, 30))
+                .thenReturn(Mono.just(CustomerUpdateResult.noChanges()));
+        when(customerRepository.updateFields(2L, null, null, "taken@example.com", null))
+                .thenReturn(Mono.error(new DuplicateKeyException("unique_email_constraint")));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(1L, null, new CustomerUpdateRequest(" ", null, 30)).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data changes found");
+        assertThatThrownBy(() -> underTest.updateCustomer(2L, null,
+                new CustomerUpdateRequest(null, "taken@example.com", null)).block())
+                .isInstanceOf(DuplicateResourceException.class);
+    }
+
+    @Test
+    void updateWithStaleVersionFailsThePrecondition() {
+        // Given
+        when(customerRepository.updateFields(1L, 41L, null, null, 30))
+                .thenReturn(Mono.just(CustomerUpdateResult.versionMismatch()));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(1L, "\"41\"", new CustomerUpdateRequest(null, null, 30)).block())
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [1] was changed since it was read");
+    }
+}
@@ -0,0 +1,99 @@
+package com.vicenzo.journey;
+
+import com.vicenzo.customer.dto.CustomerRegistrationJob;
+import com.vicenzo.customer.dto.CustomerRegistrationJob.Status;
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.model.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "customer.async-registration.enabled=true")
+class CustomerAsyncRegistrationIT {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void canRegisterCustomerAsynchronously() throws InterruptedException {
+        // queue a registration and a second one for the same email
+        String email = "%s@example.com".formatted(UUID.randomUUID());
+        EntityExchangeResult<CustomerRegistrationJob> accepted = register(email);
+        EntityExchangeResult<CustomerRegistrationJob> repeated = register(email);
+        assertThat(accepted.getResponseBody().status()).isEqualTo(Status.QUEUED);
+
+        // poll both jobs until written
+        CustomerRegistrationJob created = awaitOutcome(accepted.getResponseHeaders().getLocation());
+        CustomerRegistrationJob duplicate = awaitOutcome(repeated.getResponseHeaders().getLocation());
+        assertThat(created.status()).isEqualTo(Status.CREATED);
+        assertThat(duplicate.status()).isEqualTo(Status.DUPLICATE);
+
+        // the customer was registered once
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", created.customerId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .value(customer -> assertThat(customer.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void unknownRegistrationIsNotFound() {
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/registrations/{jobId}", UUID.randomUUID())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    private EntityExchangeResult<CustomerRegistrationJob> register(String email) {
+        return webTestClient.post()
+                .uri(CUSTOMER_URI + "/registrations")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Alex", email, 21)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isAccepted()
+                .expectBody(CustomerRegistrationJob.class)
+                .returnResult();
+    }
+
+    private CustomerRegistrationJob awaitOutcome(URI location) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        CustomerRegistrationJob job = getJob(location);
+        while (job.status() == Status.QUEUED && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            job = getJob(location);
+        }
+        return job;
+    }
+
+    private CustomerRegistrationJob getJob(URI location) {
+        return webTestClient.get()
+                .uri(location.getPath())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerRegistrationJob.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,166 @@
+package com.vicenzo.journey;
+
+import com.vicenzo.AbstractTestContainers;
+import com.vicenzo.config.VirtualThreadsProperties;
+import com.vicenzo.customer.model.Customer;
+import com.vicenzo.customer.repository.CustomerDao;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Keeps a fixed number of requests in flight against the customer read endpoints and reports throughput and
+ * latency per concurrency level. The dao caches are off so every request blocks on the database, and so is the
+ * concurrency limit, which would otherwise reject what the threading modes are compared on.
+ * <p>
+ * Run it once per mode and compare {@code target/endpoint-benchmark-platform.csv},
+ * {@code target/endpoint-benchmark-virtual.csv} and {@code target/endpoint-benchmark-reactive.csv}:
+ * <pre>
+ * ./mvnw verify -Dbenchmark=true -Dit.test=CustomerEndpointsConcurrencyIT
+ * ./mvnw -Pjava21 verify -Dbenchmark=true -Dit.test=CustomerEndpointsConcurrencyIT -Dvirtual-threads.enabled=true
+ * ./mvnw verify -Dbenchmark=true -Dit.test=CustomerEndpointsConcurrencyIT -Dspring.profiles.active=reactive
+ *     [-Dbenchmark.concurrency=50,200,1000] [-Dbenchmark.warmup=PT5S] [-Dbenchmark.duration=PT15S]
+ * </pre>
+ * With the default pool of 10 connections both modes are bound by the database, raise
+ * {@code spring.datasource.hikari.maximum-pool-size} together with
+ * {@code virtual-threads.max-concurrent-connections} to see what the request threads cost.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {"customer.cache.daos=", "customer.email-filter.daos=",
+        "customer.concurrency-limit.enabled=false"})
+class CustomerEndpointsConcurrencyIT extends AbstractTestContainers {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final int SEED_ROWS = 1000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    @Qualifier("jdbc")
+    private CustomerDao customerDao;
+
+    @Autowired
+    private VirtualThreadsProperties virtualThreadsProperties;
+
+    @Autowired
+    private Environment environment;
+
+    private final int[] concurrencyLevels = Arrays.stream(
+                    System.getProperty("benchmark.concurrency", "50,200,1000").split(","))
+            .mapToInt(Integer::parseInt)
+            .toArray();
+    private final Duration warmup = Duration.parse(System.getProperty("benchmark.warmup", "PT5S"));
+    private final Duration duration = Duration.parse(System.getProperty("benchmark.duration", "PT15S"));
+
+    @Test
+    void measureCustomerEndpoints() throws Exception {
+        String mode = environment.acceptsProfiles(Profiles.of("reactive")) ? "reactive"
+                : virtualThreadsProperties.enabled() ? "virtual" : "platform";
+        List<Long> ids = seed();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<String> report = new ArrayList<>();
+        report.add("mode,concurrency,requests,requests_per_second,p50_ms,p95_ms,p99_ms,max_ms,errors");
+        long errors = 0;
+        try {
+            for (int concurrency : concurrencyLevels) {
+                errors += run(client, ids, mode, concurrency, report);
+            }
+        } finally {
+            customerDao.deleteCustomersByIds(ids);
+        }
+
+        report.forEach(System.out::println);
+        Files.write(Path.of("target", "endpoint-benchmark-%s.csv".formatted(mode)), report);
+        assertThat(errors).isZero();
+    }
+
+    private long run(HttpClient client, List<Long> ids, String mode, int concurrency, List<String> report)
+            throws InterruptedException {
+        Timer timer = Timer.builder("customer.endpoint.benchmark")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .percentilePrecision(2)
+                // keep every sample of the run in the histogram instead of a rolling window
+                .distributionStatisticExpiry(warmup.plus(duration).multipliedBy(2))
+                .distributionStatisticBufferLength(1)
+                .register(new SimpleMeterRegistry());
+        AtomicLong errors = new AtomicLong();
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        while (System.nanoTime() < measureUntil) {
+            inFlight.acquire();
+            long start = System.nanoTime();
+            client.sendAsync(randomRequest(ids), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        if (start >= measureFrom) {
+                            if (failure != null || response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            } else {
+                                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            }
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(concurrency);
+
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder line = new StringBuilder("%s,%d,%d,%.1f".formatted(
+                mode, concurrency, snapshot.count(), snapshot.count() / (duration.toNanos() / 1e9)));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            line.append(",%.3f".formatted(percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        line.append(",%.3f,%d".formatted(snapshot.max(TimeUnit.MILLISECONDS), errors.get()));
+        report.add(line.toString());
+        return errors.get();
+    }
+
+    private HttpRequest randomRequest(List<Long> ids) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long id = ids.get(random.nextInt(ids.size()));
+        String path = random.nextBoolean()
+                ? "%s/%s".formatted(CUSTOMER_URI, id)
+                : "%s?limit=20".formatted(CUSTOMER_URI);
+        return HttpRequest.newBuilder(URI.create("http://localhost:%d%s".formatted(port, path))).GET().build();
+    }
+
+    private List<Long> seed() {
+        List<Long> ids = new ArrayList<>(SEED_ROWS);
+        for (int i = 0; i < SEED_ROWS; i++) {
+            Customer customer = new Customer(FAKER.name().fullName(),
+                    "endpoint-benchmark-%s@example.com".formatted(UUID.randomUUID()), 20 + i % 60);
+            customerDao.insertCustomer(customer).ifPresent(ids::add);
+        }
+        return ids;
+    }
+}
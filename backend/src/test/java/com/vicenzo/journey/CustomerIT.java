@@ -2,6 +2,7 @@ package com.vicenzo.journey;
 
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
+import com.vicenzo.customer.dto.CustomerMultiGetResult;
 import com.vicenzo.customer.dto.CustomerRegistrationRequest;
 import com.vicenzo.customer.dto.CustomerUpdateRequest;
 import com.vicenzo.customer.model.Customer;
@@ -9,12 +10,15 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -225,4 +229,197 @@ class CustomerIT {
                 })
                 .isEqualTo(expectedCustomer);
     }
-}
\ No newline at end of file
+
+    @Test
+    void canPollCustomerWithETag() {
+        // register a customer
+        Faker faker = new Faker();
+        String fullName = faker.name().fullName();
+        String email = "%s@example.com".formatted(UUID.randomUUID());
+        Long id = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(fullName, email, 30)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+
+        // first poll returns the customer and its etag
+        String etag = webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(etag).isNotBlank();
+
+        // polling with the etag is not modified
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // after an update the etag no longer matches
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(null, null, 31)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .value("ETag", value -> assertThat(value).isNotEqualTo(etag));
+
+        // the list etag also changes with the write
+        String listETag = webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void canUpdateCustomerIfUnchanged() {
+        // register a customer
+        Faker faker = new Faker();
+        Long id = webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(faker.name().fullName(),
+                        "%s@example.com".formatted(UUID.randomUUID()), 30)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+
+        String etag = webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        // the first writer with the read etag wins and gets the new etag
+        String updatedETag = webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .body(Mono.just(new CustomerUpdateRequest(null, null, 31)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(updatedETag).isNotEqualTo(etag);
+
+        // a second writer still holding the old etag is rejected
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .body(Mono.just(new CustomerUpdateRequest(null, null, 32)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(updatedETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void canGetCustomersByIds() {
+        // register two customers
+        Faker faker = new Faker();
+        List<Long> ids = List.of(registerCustomer(faker), registerCustomer(faker));
+
+        // ask for them in reverse order, next to an id nobody has
+        CustomerMultiGetResult result = webTestClient.get()
+                .uri(CUSTOMER_URI + "?ids={second},-1,{first}", ids.get(1), ids.get(0))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerMultiGetResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(result.customers()).extracting(Customer::getId).containsExactly(ids.get(1), ids.get(0));
+        assertThat(result.missingIds()).containsExactly(-1L);
+    }
+
+    private Long registerCustomer(Faker faker) {
+        return webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(faker.name().fullName(),
+                        "%s@example.com".formatted(UUID.randomUUID()), 30)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,257 @@
+package com.vicenzo.journey;
+
+import com.vicenzo.customer.dto.CustomerRegistrationRequest;
+import com.vicenzo.customer.dto.CustomerUpdateRequest;
+import com.vicenzo.customer.model.Customer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Runs the api against a primary and a streaming replica. Pausing the replica's replay makes it fall behind on
+ * purpose: a customer written straight to the primary is missing from reads until the lag check takes the replica
+ * out, while a customer registered through the api is read back from the primary right away by the client that
+ * registered it, and only by that client. The customer daos keep the cache and single flight they ship with.
+ */
+@Testcontainers
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {"read-replicas.enabled=true", "read-replicas.max-lag=2s",
+        "read-replicas.health-check-interval=200ms"})
+class CustomerReadReplicaIT {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final String LAST_WRITE_COOKIE = "last-write-lsn";
+    private static final String IMAGE = "bitnami/postgresql:15";
+    private static final Network NETWORK = Network.newNetwork();
+
+    @Container
+    private static final GenericContainer<?> primary = new GenericContainer<>(IMAGE)
+            .withNetwork(NETWORK)
+            .withNetworkAliases("primary")
+            .withEnv("POSTGRESQL_REPLICATION_MODE", "master")
+            .withEnv("POSTGRESQL_REPLICATION_USER", "replicator")
+            .withEnv("POSTGRESQL_REPLICATION_PASSWORD", "replicator")
+            .withEnv("POSTGRESQL_USERNAME", "root")
+            .withEnv("POSTGRESQL_PASSWORD", "root")
+            .withEnv("POSTGRESQL_DATABASE", "customer")
+            // pausing replay on the replica takes a superuser
+            .withEnv("POSTGRESQL_POSTGRES_PASSWORD", "postgres")
+            .withExposedPorts(5432)
+            .waitingFor(Wait.forLogMessage(".*database system is ready to accept connections.*\\s", 1));
+
+    @Container
+    private static final GenericContainer<?> replica = new GenericContainer<>(IMAGE)
+            .withNetwork(NETWORK)
+            .dependsOn(primary)
+            .withEnv("POSTGRESQL_REPLICATION_MODE", "slave")
+            .withEnv("POSTGRESQL_MASTER_HOST", "primary")
+            .withEnv("POSTGRESQL_MASTER_PORT_NUMBER", "5432")
+            .withEnv("POSTGRESQL_REPLICATION_USER", "replicator")
+            .withEnv("POSTGRESQL_REPLICATION_PASSWORD", "replicator")
+            .withEnv("POSTGRESQL_PASSWORD", "root")
+            .withExposedPorts(5432)
+            .waitingFor(Wait.forLogMessage(".*database system is ready to accept read-only connections.*\\s", 1));
+
+    @DynamicPropertySource
+    private static void registerDataSourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> jdbcUrl(primary));
+        registry.add("spring.datasource.username", () -> "root");
+        registry.add("spring.datasource.password", () -> "root");
+        registry.add("read-replicas.urls", () -> jdbcUrl(replica));
+    }
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private final JdbcTemplate primaryJdbcTemplate = jdbcTemplate(primary, "root", "root");
+    private final JdbcTemplate replicaJdbcTemplate = jdbcTemplate(replica, "postgres", "postgres");
+
+    @AfterEach
+    void tearDown() {
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_resume()");
+    }
+
+    @Test
+    void readsGoToTheReplicaUntilItFallsBehind() throws InterruptedException {
+        // Given
+        // a fresh replayed transaction, so the replica only starts lagging once paused
+        Long replayed = insertCustomerOnThePrimary();
+        awaitStatus(replayed, HttpStatus.OK);
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()");
+        Long missing = insertCustomerOnThePrimary();
+
+        // When
+        HttpStatusCode whileReplicaIsCurrent = getCustomerStatus(missing);
+
+        // Then
+        assertThat(whileReplicaIsCurrent).isEqualTo(HttpStatus.NOT_FOUND);
+        awaitStatus(missing, HttpStatus.OK);
+    }
+
+    @Test
+    void readsOwnWritesRightAway() throws InterruptedException {
+        // Given
+        awaitStatus(insertCustomerOnThePrimary(), HttpStatus.OK);
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()");
+
+        // When
+        EntityExchangeResult<Long> registration = registerCustomer();
+
+        // Then
+        ResponseCookie lastWrite = registration.getResponseCookies().getFirst(LAST_WRITE_COOKIE);
+        assertThat(lastWrite).isNotNull();
+        assertThat(getCustomerStatus(registration.getResponseBody(), lastWrite)).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void writesOfAnotherClientLeaveReadsOnTheReplica() throws InterruptedException {
+        // Given
+        awaitStatus(insertCustomerOnThePrimary(), HttpStatus.OK);
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()");
+        Long missing = insertCustomerOnThePrimary();
+
+        // When
+        EntityExchangeResult<Long> registration = registerCustomer();
+
+        // Then
+        assertThat(registration.getResponseCookies().getFirst(LAST_WRITE_COOKIE)).isNotNull();
+        assertThat(getCustomerStatus(missing)).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(getCustomerStatus(registration.getResponseBody())).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void readsOwnUpdatesRightAwayWhileOtherClientsReadTheReplica() throws InterruptedException {
+        // Given
+        Long id = insertCustomerOnThePrimary();
+        awaitStatus(id, HttpStatus.OK);
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()");
+
+        // When
+        ResponseCookie lastWrite = renameCustomer(id, "Renamed");
+        // a stale row another client read from the replica must not be what the writer gets next
+        Customer otherClientRead = getCustomer(id, null);
+        Customer ownRead = getCustomer(id, lastWrite);
+
+        // Then
+        assertThat(otherClientRead.getName()).isEqualTo("Jamila");
+        assertThat(ownRead.getName()).isEqualTo("Renamed");
+    }
+
+    private ResponseCookie renameCustomer(Long id, String name) {
+        ResponseCookie lastWrite = webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(name, null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseCookies()
+                .getFirst(LAST_WRITE_COOKIE);
+        assertThat(lastWrite).isNotNull();
+        return lastWrite;
+    }
+
+    private Customer getCustomer(Long id, ResponseCookie lastWrite) {
+        return webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .cookies(cookies -> {
+                    if (lastWrite != null) {
+                        cookies.add(lastWrite.getName(), lastWrite.getValue());
+                    }
+                })
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private EntityExchangeResult<Long> registerCustomer() {
+        String email = "read-replica-" + UUID.randomUUID() + "@example.com";
+        return webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Alex", email, 21)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Long.class)
+                .returnResult();
+    }
+
+    private Long insertCustomerOnThePrimary() {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (?, ?, ?)
+                RETURNING id
+                """;
+        return primaryJdbcTemplate.queryForObject(sql, Long.class,
+                "Jamila", "read-replica-" + UUID.randomUUID() + "@example.com", 22);
+    }
+
+    private HttpStatusCode getCustomerStatus(Long id) {
+        return webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .returnResult(String.class)
+                .getStatus();
+    }
+
+    private HttpStatusCode getCustomerStatus(Long id, ResponseCookie lastWrite) {
+        return webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .cookie(lastWrite.getName(), lastWrite.getValue())
+                .exchange()
+                .returnResult(String.class)
+                .getStatus();
+    }
+
+    private void awaitStatus(Long id, HttpStatus expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!getCustomerStatus(id).equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(getCustomerStatus(id)).isEqualTo(expected);
+    }
+
+    private static String jdbcUrl(GenericContainer<?> container) {
+        return "jdbc:postgresql://%s:%s/customer".formatted(container.getHost(), container.getMappedPort(5432));
+    }
+
+    private static JdbcTemplate jdbcTemplate(GenericContainer<?> container, String username, String password) {
+        return new JdbcTemplate(DataSourceBuilder.create()
+                .url(jdbcUrl(container))
+                .username(username)
+                .password(password)
+                .build());
+    }
+}
@@ -0,0 +1,196 @@
+package com.vicenzo.util;
+
+import com.vicenzo.customer.model.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RowMapperFactoryTest {
+
+    record CustomerView(long id, String fullName, Integer age) {
+    }
+
+    @Test
+    void mapsBeansByColumnLabel() throws SQLException {
+        // Given
+        ResultSet rs = resultSet(new String[]{"age", "email", "id", "name", "ignored"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.VARCHAR},
+                new Object[]{21, "alex@gmail.com", 1L, "Alex", "x"},
+                new Object[]{22, "jamila@gmail.com", 2L, "Jamila", "y"});
+        RowMapper<Customer> underTest = RowMapperFactory.forClass(Customer.class);
+
+        // When
+        List<Customer> actual = mapAll(rs, underTest);
+
+        // Then
+        assertThat(actual).containsExactly(
+                new Customer(1L, "Alex", "alex@gmail.com", 21),
+                new Customer(2L, "Jamila", "jamila@gmail.com", 22));
+    }
+
+    @Test
+    void nullsLeaveDefaults() throws SQLException {
+        // Given
+        ResultSet rs = resultSet(new String[]{"id", "full_name", "age"},
+                new int[]{Types.BIGINT, Types.VARCHAR, Types.INTEGER},
+                new Object[]{null, "Alex", null});
+
+        // When
+        List<CustomerView> actual = mapAll(rs, RowMapperFactory.forClass(CustomerView.class));
+
+        // Then
+        assertThat(actual).containsExactly(new CustomerView(0L, "Alex", null));
+    }
+
+    @Test
+    void mapsRecordsAcrossResultSetShapes() throws SQLException {
+        // Given
+        RowMapper<CustomerView> underTest = RowMapperFactory.forClass(CustomerView.class);
+        ResultSet first = resultSet(new String[]{"id", "full_name", "age"},
+                new int[]{Types.BIGINT, Types.VARCHAR, Types.INTEGER},
+                new Object[]{1L, "Alex", 21});
+        ResultSet second = resultSet(new String[]{"age", "id"},
+                new int[]{Types.INTEGER, Types.BIGINT},
+                new Object[]{22, 2L});
+
+        // When
+        List<CustomerView> actual = new ArrayList<>(mapAll(first, underTest));
+        actual.addAll(mapAll(second, underTest));
+
+        // Then
+        assertThat(actual).containsExactly(
+                new CustomerView(1L, "Alex", 21),
+                new CustomerView(2L, null, 22));
+    }
+
+    @Test
+    void resolvesEachResultSetOnceAcrossCollectionsAndThreads() throws Exception {
+        // Given
+        RowMapper<CustomerView> underTest = RowMapperFactory.forClass(CustomerView.class);
+        AtomicInteger metaDataReads = new AtomicInteger();
+        ResultSet rs = countingMetaDataReads(resultSet(new String[]{"id", "full_name", "age"},
+                new int[]{Types.BIGINT, Types.VARCHAR, Types.INTEGER},
+                new Object[]{1L, "Alex", 21},
+                new Object[]{2L, "Jamila", 22}), metaDataReads);
+        ResultSet other = resultSet(new String[]{"age", "id"},
+                new int[]{Types.INTEGER, Types.BIGINT},
+                new Object[]{23, 3L});
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // When
+        rs.next();
+        CustomerView first = underTest.mapRow(rs, 0);
+        System.gc();
+        List<CustomerView> otherThread = executor.submit(() -> mapAll(other, underTest)).get(5, TimeUnit.SECONDS);
+        rs.next();
+        CustomerView second = underTest.mapRow(rs, 1);
+        executor.shutdown();
+
+        // Then
+        assertThat(List.of(first, second)).containsExactly(
+                new CustomerView(1L, "Alex", 21),
+                new CustomerView(2L, "Jamila", 22));
+        assertThat(otherThread).containsExactly(new CustomerView(3L, null, 23));
+        assertThat(metaDataReads).hasValue(1);
+    }
+
+    @Test
+    void populatorFillsExistingInstances() throws SQLException {
+        // Given
+        ResultSet rs = resultSet(new String[]{"id", "name", "email", "age"},
+                new int[]{Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.INTEGER},
+                new Object[]{1L, "Alex", null, 21});
+        RowMapperFactory.Populator<Customer> underTest =
+                RowMapperFactory.populator(Customer.class, rs, new String[]{"id", "name", "email"});
+        Customer customer = new Customer();
+
+        // When
+        rs.next();
+        underTest.populate(customer, rs);
+
+        // Then
+        assertThat(customer).isEqualTo(new Customer(1L, "Alex", null, null));
+    }
+
+    @Test
+    void willThrowWhenPopulatingColumnWithoutSetter() throws SQLException {
+        // Given
+        ResultSet rs = resultSet(new String[]{"id", "unknown"},
+                new int[]{Types.BIGINT, Types.VARCHAR},
+                new Object[]{1L, "x"});
+
+        // When
+        // Then
+        assertThatThrownBy(() -> RowMapperFactory.populator(Customer.class, rs, new String[]{"id", "unknown"}))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("unknown");
+    }
+
+    private static <T> List<T> mapAll(ResultSet rs, RowMapper<T> rowMapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(rowMapper.mapRow(rs, rows.size()));
+        }
+        return rows;
+    }
+
+    private static ResultSet countingMetaDataReads(ResultSet rs, AtomicInteger metaDataReads) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getMetaData")) {
+                        metaDataReads.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(rs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static ResultSet resultSet(String[] labels, int[] types, Object[]... rows) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            metaData.setColumnName(i + 1, labels[i]);
+            metaData.setColumnLabel(i + 1, labels[i]);
+            metaData.setColumnType(i + 1, types[i]);
+            metaData.setNullable(i + 1, ResultSetMetaData.columnNullable);
+        }
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        rowSet.setMetaData(metaData);
+        for (Object[] row : rows) {
+            rowSet.last(); // rows are inserted after the cursor
+            rowSet.moveToInsertRow();
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] == null) {
+                    rowSet.updateNull(i + 1);
+                } else {
+                    rowSet.updateObject(i + 1, row[i]);
+                }
+            }
+            rowSet.insertRow();
+            rowSet.moveToCurrentRow();
+        }
+        rowSet.beforeFirst();
+        return rowSet;
+    }
+}